@@ -0,0 +1,46 @@
+package com.levelcache.benchmark;
+
+import com.levelcache.config.CacheConfiguration;
+import com.levelcache.config.ConfigurationBuilder;
+import com.levelcache.core.LevelCache;
+import com.levelcache.factory.CacheFactory;
+
+/**
+ * Builds the caches and key sets shared by the JMH benchmarks.
+ */
+final class BenchmarkCaches {
+
+	private BenchmarkCaches() {
+	}
+
+	static LevelCache<String, String> create(String name, int levels, int capacity, String policy) throws Exception {
+		CacheConfiguration config = new ConfigurationBuilder()
+				.setCacheName(name)
+				.setConcurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.setStripingEnabled(true)
+				.setMaxCacheLevels(Math.max(levels, 1))
+				.setKeyType(String.class)
+				.setValueType(String.class)
+				.build();
+		LevelCache<String, String> cache = CacheFactory.createCache(config);
+		for (int level = 1; level <= levels; level++) {
+			cache.addLevel(capacity, policy);
+		}
+		return cache;
+	}
+
+	// Keys are built up front so the benchmarks only measure the cache
+	static String[] keys(int count) {
+		String[] keys = new String[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = "key-" + i;
+		}
+		return keys;
+	}
+
+	static void fill(LevelCache<String, String> cache, String[] keys) {
+		for (String key : keys) {
+			cache.put(key, "value-" + key);
+		}
+	}
+}
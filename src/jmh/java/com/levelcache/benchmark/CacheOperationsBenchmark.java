@@ -0,0 +1,109 @@
+package com.levelcache.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.levelcache.core.LevelCache;
+
+/**
+ * Throughput of the single and bulk operations of a warm cache, for each
+ * eviction policy and number of levels. Every key of the working set is
+ * resident, spread over the levels, so reads hit and writes overwrite.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheOperationsBenchmark {
+
+	private static final int BATCH_SIZE = 100;
+
+	@Param({ "LRU", "LFU", "TINY_LFU" })
+	public String policy;
+
+	@Param({ "1", "3" })
+	public int levels;
+
+	@Param({ "10000" })
+	public int capacity;
+
+	private LevelCache<String, String> cache;
+	private String[] keys;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		cache = BenchmarkCaches.create("jmh-operations", levels, capacity, policy);
+		keys = BenchmarkCaches.keys(levels * capacity);
+		BenchmarkCaches.fill(cache, keys);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cache.close();
+	}
+
+	/**
+	 * Position of each benchmark thread in the working set.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index = ThreadLocalRandom.current().nextInt(1 << 20);
+
+		String next(String[] keys) {
+			return keys[(index++ & Integer.MAX_VALUE) % keys.length];
+		}
+
+		List<String> nextBatch(String[] keys) {
+			String[] batch = new String[BATCH_SIZE];
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				batch[i] = next(keys);
+			}
+			return Arrays.asList(batch);
+		}
+	}
+
+	@Benchmark
+	public String get(Cursor cursor) {
+		return cache.get(cursor.next(keys));
+	}
+
+	@Benchmark
+	public void put(Cursor cursor) {
+		String key = cursor.next(keys);
+		cache.put(key, key);
+	}
+
+	@Benchmark
+	public Map<String, String> getAll(Cursor cursor) {
+		return cache.getAll(cursor.nextBatch(keys));
+	}
+
+	@Benchmark
+	public void putAll(Cursor cursor) {
+		Map<String, String> batch = new HashMap<>();
+		for (String key : cursor.nextBatch(keys)) {
+			batch.put(key, key);
+		}
+		cache.putAll(batch);
+	}
+}
@@ -0,0 +1,92 @@
+package com.levelcache.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.levelcache.core.LevelCache;
+
+/**
+ * Cost of a write that evicts from every level. The cache is kept full and
+ * each put brings a key it has not seen recently, so its victim cascades down
+ * the whole hierarchy and falls off the last level. Every benchmark thread
+ * walks its own part of the key space, so threads never write the same key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CascadeBenchmark {
+
+	// Far larger than the cache, a key is long gone when the cursor comes back to it
+	private static final int KEY_SPACE = 1 << 20;
+
+	@Param({ "1", "2", "4", "8" })
+	public int depth;
+
+	@Param({ "LRU", "LFU" })
+	public String policy;
+
+	@Param({ "1024" })
+	public int capacity;
+
+	private LevelCache<String, String> cache;
+	private String[] keys;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		cache = BenchmarkCaches.create("jmh-cascade", depth, capacity, policy);
+		keys = BenchmarkCaches.keys(KEY_SPACE);
+		// Filled from the end of the key space, away from where the cursors start
+		for (int i = KEY_SPACE - depth * capacity; i < KEY_SPACE; i++) {
+			cache.put(keys[i], keys[i]);
+		}
+	}
+
+	/**
+	 * Position of each benchmark thread, in a slice of the key space of its own.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+		int start;
+		int length;
+
+		@Setup(Level.Trial)
+		public void setUp(ThreadParams threads) {
+			length = KEY_SPACE / threads.getThreadCount();
+			start = threads.getThreadIndex() * length;
+			index = 0;
+		}
+
+		String next(String[] keys) {
+			return keys[start + (index++ & Integer.MAX_VALUE) % length];
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cache.close();
+	}
+
+	@Benchmark
+	public void putThroughAllLevels(Cursor cursor) {
+		String key = cursor.next(keys);
+		cache.put(key, key);
+	}
+}
@@ -0,0 +1,73 @@
+package com.levelcache.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.levelcache.core.LevelCache;
+
+/**
+ * Throughput of a mix of reads and writes over a working set twice the size
+ * of the cache, so a share of the reads miss and writes keep evicting.
+ * Run it with {@code -t 1}, {@code -t 4}, ... {@code -t max} to see how the
+ * mix scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadWriteMixBenchmark {
+
+	@Param({ "50", "90", "100" })
+	public int readPercent;
+
+	@Param({ "LRU", "LFU", "CONCURRENT_LRU", "TINY_LFU", "S3_FIFO" })
+	public String policy;
+
+	@Param({ "2" })
+	public int levels;
+
+	@Param({ "10000" })
+	public int capacity;
+
+	private LevelCache<String, String> cache;
+	private String[] keys;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		cache = BenchmarkCaches.create("jmh-mix", levels, capacity, policy);
+		keys = BenchmarkCaches.keys(2 * levels * capacity);
+		BenchmarkCaches.fill(cache, keys);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cache.close();
+	}
+
+	@Benchmark
+	public String mixed() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String key = keys[random.nextInt(keys.length)];
+		if (random.nextInt(100) < readPercent) {
+			return cache.get(key);
+		}
+		cache.put(key, key);
+		return key;
+	}
+}
@@ -22,7 +22,7 @@ public class App {
 				    			.setMaxCacheLevels(100)
 				    			.build();
     	
-    	LevelCache cache = CacheFactory.createCache(cacheConfiguration);
+    	LevelCache<String, String> cache = CacheFactory.createCache(cacheConfiguration);
     	
 		try {
 			cache.addLevel(3, "LRU");
@@ -1,5 +1,14 @@
 package com.levelcache.config;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.levelcache.core.HierarchyMode;
+import com.levelcache.serialization.Serializer;
+import com.levelcache.stats.StatsCounter;
+import com.levelcache.storage.Weigher;
+import com.levelcache.util.Ticker;
+
 /**
  * Configuration class for cache settings. This class holds configuration parameters
  * used to initialize and manage a cache system, such as the cache name, logging settings,
@@ -24,10 +33,19 @@ public class CacheConfiguration {
 
     /**
      * The level of concurrency allowed for the cache operations.
-     * Determines the number of concurrent threads that can access the cache.
+     * With striping enabled, determines the number of independent segments the
+     * key space is split into, each with its own lock, so up to this many threads
+     * can write concurrently. Values below 2 keep a single segment.
      */
     protected int concurrencyLevel;
 
+    /**
+     * Flag indicating if the key space is split into one segment per unit of
+     * the concurrency level. When disabled, the cache keeps a single segment
+     * and a level may be of any size.
+     */
+    protected boolean stripingEnabled;
+
     /**
      * The maximum number of cache levels allowed in the cache system.
      * Controls the depth of the cache hierarchy.
@@ -36,6 +54,67 @@ public class CacheConfiguration {
     
     protected Class<?> keyType;
     protected Class<?> valueType;
+
+    /**
+     * Serializers used by the levels that store data outside of the Java heap.
+     * When not set, {@link com.levelcache.serialization.DefaultSerializer} is used.
+     */
+    protected Serializer<?> keySerializer;
+    protected Serializer<?> valueSerializer;
+
+    /**
+     * Directory under which disk-backed levels create their segment files.
+     * When not set, the system temporary directory is used.
+     */
+    protected String diskStoragePath;
+
+    /**
+     * Weigher of the entries of the levels whose capacity is a weight.
+     * When not set, {@link com.levelcache.storage.DefaultWeigher} estimates their size in bytes.
+     */
+    protected Weigher<?, ?> weigher;
+
+    /**
+     * Executor running the operations of the asynchronous view of the cache.
+     * When not set, every operation runs on its own virtual thread where the
+     * runtime supports them, and on a shared pool of daemon threads otherwise.
+     */
+    protected Executor asyncExecutor;
+
+    /**
+     * Default time, in nanoseconds, after which an entry expires once written,
+     * and after which it expires once last read or written. 0 disables expiry.
+     */
+    protected long expireAfterWriteNanos;
+    protected long expireAfterAccessNanos;
+
+    /**
+     * Time source of the expiry, the system ticker when not set.
+     */
+    protected Ticker ticker;
+
+    /**
+     * How the levels share their keys, exclusive when not set.
+     */
+    protected HierarchyMode hierarchyMode;
+
+    /**
+     * Number of hot entries each thread keeps in its near cache, 0 to disable it.
+     */
+    protected int nearCacheSize;
+
+    /**
+     * Flag indicating if the cache collects statistics, readable through
+     * {@link com.levelcache.core.LevelCache#stats()} and published over JMX
+     * under the cache name.
+     */
+    protected boolean statisticsEnabled;
+
+    /**
+     * Counter receiving the hits, misses, demotions and evictions of the cache,
+     * in addition to the built-in statistics when they are enabled.
+     */
+    protected StatsCounter statsCounter;
     
     /**
      * Package-private constructor to enforce the use of the builder pattern for creating
@@ -57,6 +136,15 @@ public class CacheConfiguration {
         return concurrencyLevel;
     }
 
+    /**
+     * Checks if the key space is split into segments by the concurrency level.
+     *
+     * @return {@code true} if striping is enabled, {@code false} otherwise
+     */
+    public boolean isStripingEnabled() {
+        return stripingEnabled;
+    }
+
     /**
      * Gets the maximum number of cache levels allowed in the cache system.
      *
@@ -102,5 +190,115 @@ public class CacheConfiguration {
         return valueType;
     }
 
+    /**
+     * Gets the serializer for keys stored outside of the Java heap.
+     *
+     * @return the key serializer, or {@code null} to use the default one
+     */
+    public Serializer<?> getKeySerializer() {
+        return keySerializer;
+    }
+
+    /**
+     * Gets the serializer for values stored outside of the Java heap.
+     *
+     * @return the value serializer, or {@code null} to use the default one
+     */
+    public Serializer<?> getValueSerializer() {
+        return valueSerializer;
+    }
+
+    /**
+     * Gets the directory under which disk-backed levels store their files.
+     *
+     * @return the disk storage directory, or {@code null} to use the system temporary directory
+     */
+    public String getDiskStoragePath() {
+        return diskStoragePath;
+    }
+
+    /**
+     * Gets the weigher of the entries of weighted levels.
+     *
+     * @return the weigher, or {@code null} to use the default one
+     */
+    public Weigher<?, ?> getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * Gets the executor of the asynchronous view of the cache.
+     *
+     * @return the executor, or {@code null} to use the default one
+     */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Gets the default time after which an entry expires once written.
+     *
+     * @param unit the unit of the returned duration
+     * @return the duration, 0 if entries do not expire after write
+     */
+    public long getExpireAfterWrite(TimeUnit unit) {
+        return unit.convert(expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the default time after which an entry expires once last read or written.
+     *
+     * @param unit the unit of the returned duration
+     * @return the duration, 0 if entries do not expire after access
+     */
+    public long getExpireAfterAccess(TimeUnit unit) {
+        return unit.convert(expireAfterAccessNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the time source of the expiry.
+     *
+     * @return the ticker, or {@code null} to use the system ticker
+     */
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Gets how the levels share their keys.
+     *
+     * @return the hierarchy mode, {@link HierarchyMode#EXCLUSIVE} by default
+     */
+    public HierarchyMode getHierarchyMode() {
+        return hierarchyMode == null ? HierarchyMode.EXCLUSIVE : hierarchyMode;
+    }
+
+    /**
+     * Gets the number of hot entries each thread keeps in its near cache.
+     *
+     * @return the size of the near cache of a thread, 0 when it is disabled
+     */
+    public int getNearCacheSize() {
+        return nearCacheSize;
+    }
+
+    /**
+     * Checks if the cache collects statistics.
+     *
+     * @return {@code true} if statistics are enabled, {@code false} otherwise
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    /**
+     * Gets the counter receiving the events of the cache.
+     *
+     * @return the stats counter, or {@code null} when statistics are not collected
+     */
+    public StatsCounter getStatsCounter() {
+        return statsCounter;
+    }
+
 
 }
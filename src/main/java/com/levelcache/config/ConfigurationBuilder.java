@@ -1,5 +1,14 @@
 package com.levelcache.config;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.levelcache.core.HierarchyMode;
+import com.levelcache.serialization.Serializer;
+import com.levelcache.stats.StatsCounter;
+import com.levelcache.storage.Weigher;
+import com.levelcache.util.Ticker;
+
 /**
  * Builder class for creating instances of {@link CacheConfiguration}.
  * <p>
@@ -47,8 +56,9 @@ public class ConfigurationBuilder {
 
     /**
      * Sets the concurrency level for the cache.
-     * The concurrency level determines the number of concurrent threads that can
-     * access the cache.
+     * With striping enabled, the concurrency level determines the number of
+     * independent segments, and so the number of concurrent threads that can
+     * write to the cache.
      * 
      * @param concurrencyLevel the concurrency level
      * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
@@ -58,6 +68,20 @@ public class ConfigurationBuilder {
         return this;
     }
 
+    /**
+     * Enables or disables the striping of the cache into one segment per unit of
+     * the concurrency level, each with its own lock. The capacity of every level
+     * is then split evenly over the segments, so no level can be smaller than the
+     * concurrency level. Disabled by default, the cache keeps a single segment.
+     * 
+     * @param stripingEnabled {@code true} to split the cache into segments
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setStripingEnabled(boolean stripingEnabled) {
+        config.stripingEnabled = stripingEnabled;
+        return this;
+    }
+
     /**
      * Sets the maximum number of cache levels.
      * 
@@ -79,6 +103,146 @@ public class ConfigurationBuilder {
         return this;
     }
 
+    /**
+     * Sets the serializer used for keys by the levels that store data off-heap.
+     * 
+     * @param keySerializer the key serializer
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setKeySerializer(Serializer<?> keySerializer) {
+        config.keySerializer = keySerializer;
+        return this;
+    }
+
+    /**
+     * Sets the serializer used for values by the levels that store data off-heap.
+     * 
+     * @param valueSerializer the value serializer
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setValueSerializer(Serializer<?> valueSerializer) {
+        config.valueSerializer = valueSerializer;
+        return this;
+    }
+
+    /**
+     * Sets the directory under which disk-backed levels create their segment files.
+     * 
+     * @param diskStoragePath the disk storage directory
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setDiskStoragePath(String diskStoragePath) {
+        config.diskStoragePath = diskStoragePath;
+        return this;
+    }
+
+    /**
+     * Sets the weigher of the entries of the levels whose capacity is a weight.
+     * Writes of an entry it weighs zero or less are rejected.
+     * 
+     * @param weigher the weigher, typically estimating the size of an entry in bytes
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setWeigher(Weigher<?, ?> weigher) {
+        config.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Sets the executor running the operations of the asynchronous view of the cache.
+     * 
+     * @param asyncExecutor the executor, which should not run tasks on the calling thread
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setAsyncExecutor(Executor asyncExecutor) {
+        config.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * Sets the default time after which an entry expires once written.
+     * 
+     * @param duration the duration, 0 to disable
+     * @param unit the unit of the duration
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setExpireAfterWrite(long duration, TimeUnit unit) {
+        config.expireAfterWriteNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Sets the default time after which an entry expires once last read or written.
+     * 
+     * @param duration the duration, 0 to disable
+     * @param unit the unit of the duration
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setExpireAfterAccess(long duration, TimeUnit unit) {
+        config.expireAfterAccessNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Sets the time source of the expiry, typically to control time in tests.
+     * 
+     * @param ticker the ticker
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setTicker(Ticker ticker) {
+        config.ticker = ticker;
+        return this;
+    }
+
+    /**
+     * Sets how the levels share their keys, either each key in a single level or
+     * every level holding the keys of the levels above it.
+     * 
+     * @param hierarchyMode the hierarchy mode
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setHierarchyMode(HierarchyMode hierarchyMode) {
+        config.hierarchyMode = hierarchyMode;
+        return this;
+    }
+
+    /**
+     * Sets the number of hot entries each thread keeps in a near cache in front
+     * of L1, read without taking any lock. 0, the default, disables it. The copies
+     * are per thread, so the virtual threads of the default async executor, one
+     * per operation, never hit them.
+     * 
+     * @param nearCacheSize the size of the near cache of a thread
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setNearCacheSize(int nearCacheSize) {
+        config.nearCacheSize = nearCacheSize;
+        return this;
+    }
+
+    /**
+     * Enables or disables the built-in statistics of the cache, which are also
+     * published over JMX under the cache name.
+     * 
+     * @param statisticsEnabled {@code true} to collect statistics
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setStatisticsEnabled(boolean statisticsEnabled) {
+        config.statisticsEnabled = statisticsEnabled;
+        return this;
+    }
+
+    /**
+     * Sets the counter receiving the hits, misses, demotions and evictions of the cache.
+     * 
+     * @param statsCounter the stats counter, which must be thread-safe
+     * @return the current instance of {@code CacheConfigurationBuilder} for method chaining
+     */
+    public ConfigurationBuilder setStatsCounter(StatsCounter statsCounter) {
+        config.statsCounter = statsCounter;
+        return this;
+    }
+
 
     /**
      * Builds and returns the fully constructed {@link CacheConfiguration} instance.
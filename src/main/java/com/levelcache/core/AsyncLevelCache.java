@@ -0,0 +1,68 @@
+package com.levelcache.core;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking view of a {@link LevelCache}.
+ * <p>
+ * Every operation is handed to the executor configured with
+ * {@link com.levelcache.config.ConfigurationBuilder#setAsyncExecutor(java.util.concurrent.Executor)}
+ * and returns immediately, so the caller never parks on the cache locks. The
+ * returned futures complete with the result of the matching {@link LevelCache}
+ * operation, or exceptionally with the exception it threw.
+ * </p>
+ * <p>
+ * Operations touching the same key run and complete in the order they were
+ * submitted, a {@code getAsync} issued after a {@code putAsync} of the same key
+ * observes its value. Operations on unrelated keys run in parallel.
+ * </p>
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of cached values
+ */
+public interface AsyncLevelCache<K, V> {
+
+    /**
+     * Asynchronously retrieves a value from the cache by its key.
+     *
+     * @param key the key associated with the value to be retrieved
+     * @return a future of the value associated with the key, or of null if not found
+     * @see LevelCache#get(Object)
+     */
+    public CompletableFuture<V> getAsync(K key);
+
+    /**
+     * Asynchronously retrieves the values of the provided keys.
+     *
+     * @param keys the keys for which values need to be fetched
+     * @return a future of the found keys mapped to their values
+     * @see LevelCache#getAll(Collection)
+     */
+    public CompletableFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys);
+
+    /**
+     * Asynchronously inserts a key-value pair into the cache.
+     *
+     * @param key the key to associate with the value
+     * @param value the value to be stored in the cache
+     * @return a future completing once the pair is stored
+     * @see LevelCache#put(Object, Object)
+     */
+    public CompletableFuture<Void> putAsync(K key, V value);
+
+    /**
+     * Asynchronously inserts multiple key-value pairs into the cache in bulk.
+     *
+     * @param data a map containing key-value pairs to be inserted into the cache
+     * @return a future completing once all the pairs are stored
+     * @see LevelCache#putAll(Map)
+     */
+    public CompletableFuture<Void> putAllAsync(Map<? extends K, ? extends V> data);
+
+    /**
+     * Returns the blocking cache this view operates on.
+     */
+    public LevelCache<K, V> synchronous();
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.levelcache.core;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Default {@link AsyncLevelCache}, running the blocking operations of a
+ * {@link LevelCache} on an executor.
+ * <p>
+ * Per-key ordering is kept by chaining operations: the latest pending operation
+ * of every key is its tail, and a new operation on the key is only handed to the
+ * executor once the tail it replaces has completed. Bulk operations wait for the
+ * tails of all their keys and register themselves as the tail of each of them,
+ * under a lock so two bulk operations can never wait on each other.
+ * </p>
+ */
+final class AsyncLevelCacheImpl<K, V> implements AsyncLevelCache<K, V> {
+
+	private final LevelCache<K, V> cache;
+	private final Executor executor;
+	// Latest pending operation of each key
+	private final ConcurrentMap<K, CompletableFuture<?>> tails;
+	// Serializes the registration of operations spanning several keys
+	private final Object bulkLock;
+
+	AsyncLevelCacheImpl(LevelCache<K, V> cache, Executor executor) {
+		this.cache = cache;
+		this.executor = executor == null ? DefaultExecutor.INSTANCE : executor;
+		this.tails = new ConcurrentHashMap<>();
+		this.bulkLock = new Object();
+	}
+
+	/**
+	 * Executor used when none is configured, shared by every cache.
+	 */
+	private static final class DefaultExecutor {
+		static final Executor INSTANCE = create();
+
+		private static Executor create() {
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (Executor) factory.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				// Virtual threads need Java 21, use daemon threads so the pool never holds up shutdown
+				return Executors.newCachedThreadPool(runnable -> {
+					Thread thread = new Thread(runnable, "levelcache-async");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+		}
+	}
+
+	@Override
+	public CompletableFuture<V> getAsync(K key) {
+		return submit(key, () -> cache.get(key));
+	}
+
+	@Override
+	public CompletableFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys) {
+		return submit(keys, () -> cache.getAll(keys));
+	}
+
+	@Override
+	public CompletableFuture<Void> putAsync(K key, V value) {
+		return submit(key, () -> {
+			cache.put(key, value);
+			return null;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> putAllAsync(Map<? extends K, ? extends V> data) {
+		return submit(data.keySet(), () -> {
+			cache.putAll(data);
+			return null;
+		});
+	}
+
+	@Override
+	public LevelCache<K, V> synchronous() {
+		return cache;
+	}
+
+	private <T> CompletableFuture<T> submit(K key, Supplier<T> operation) {
+		CompletableFuture<T> task = new CompletableFuture<>();
+		CompletableFuture<?> previous = tails.put(key, task);
+		task.whenComplete((result, error) -> tails.remove(key, task));
+		if (previous == null) {
+			execute(task, operation);
+		} else {
+			previous.whenComplete((result, error) -> execute(task, operation));
+		}
+		return task;
+	}
+
+	private <T> CompletableFuture<T> submit(Iterable<? extends K> keys, Supplier<T> operation) {
+		CompletableFuture<T> task = new CompletableFuture<>();
+		List<CompletableFuture<?>> previous = new ArrayList<>();
+		synchronized (bulkLock) {
+			for (K key : keys) {
+				CompletableFuture<?> tail = tails.put(key, task);
+				// A key listed twice must not make the task wait on itself
+				if (tail != null && tail != task) {
+					previous.add(tail);
+				}
+			}
+		}
+		task.whenComplete((result, error) -> {
+			for (K key : keys) {
+				tails.remove(key, task);
+			}
+		});
+		if (previous.isEmpty()) {
+			execute(task, operation);
+		} else {
+			CompletableFuture.allOf(previous.toArray(new CompletableFuture<?>[0]))
+					.whenComplete((result, error) -> execute(task, operation));
+		}
+		return task;
+	}
+
+	private <T> void execute(CompletableFuture<T> task, Supplier<T> operation) {
+		try {
+			executor.execute(() -> {
+				try {
+					task.complete(operation.get());
+				} catch (Throwable e) {
+					task.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			task.completeExceptionally(e);
+		}
+	}
+}
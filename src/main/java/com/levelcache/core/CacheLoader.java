@@ -0,0 +1,21 @@
+package com.levelcache.core;
+
+/**
+ * Computes the value of a key missing from a {@link LevelCache}, typically by
+ * fetching it from the system of record behind the cache.
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of cached values
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+
+    /**
+     * Loads the value of the key.
+     *
+     * @param key the key whose value is missing from the cache
+     * @return the value of the key, or null if there is none, in which case nothing is cached
+     * @throws Exception if the value cannot be loaded
+     */
+    public V load(K key) throws Exception;
+}
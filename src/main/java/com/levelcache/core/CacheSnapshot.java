@@ -0,0 +1,386 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.levelcache.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import com.levelcache.serialization.Serializer;
+
+/**
+ * Binary snapshot of the levels of a {@link LevelCacheImpl}, read back on
+ * startup to restart warm.
+ * <p>
+ * The file starts with the layout of the levels, the policy and capacity of
+ * each, followed by chunks of entries. A chunk holds entries of a single level
+ * in eviction order, each record being
+ * {@code [key length][value length][frequency][key][value]}, behind a
+ * {@code [level][entry count][byte length]} header. The segments are copied one
+ * at a time under their read lock and encoded once the lock is released, so
+ * writers only ever wait for the copy of one segment. The file is written
+ * aside and moved into place once complete.
+ * </p>
+ * <p>
+ * Loading maps the chunks into memory and decodes them in parallel, the file
+ * is never read through the heap.
+ * </p>
+ */
+final class CacheSnapshot {
+
+	private static final int MAGIC = 0x4C43534E;
+	private static final int VERSION = 1;
+	private static final int CHUNK_HEADER = 16;
+	private static final int RECORD_HEADER = 12;
+	// Chunks stay well below the 2GB a single mapping can cover, but for a record
+	// larger than that on its own, which fills a chunk by itself
+	private static final int MAX_CHUNK_SIZE = 64 << 20;
+	private static final int MAX_RECORD_SIZE = Integer.MAX_VALUE - CHUNK_HEADER;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private CacheSnapshot() {
+	}
+
+	/**
+	 * Policy and total capacity of a level, its weight when the level is weighted.
+	 */
+	static final class Level {
+		final String policy;
+		final boolean weighted;
+		final long capacity;
+
+		Level(String policy, boolean weighted, long capacity) {
+			this.policy = policy;
+			this.weighted = weighted;
+			this.capacity = capacity;
+		}
+	}
+
+	static final class Entry<K, V> {
+		final K key;
+		final V value;
+		final int frequency;
+
+		Entry(K key, V value, int frequency) {
+			this.key = key;
+			this.value = value;
+			this.frequency = frequency;
+		}
+	}
+
+	/**
+	 * Entries of a chunk, decoded in the order they were written.
+	 */
+	static final class Chunk<K, V> {
+		final int level;
+		final List<Entry<K, V>> entries;
+
+		Chunk(int level, List<Entry<K, V>> entries) {
+			this.level = level;
+			this.entries = entries;
+		}
+	}
+
+	/**
+	 * Writes the levels of the segments to the file, replacing it.
+	 */
+	static <K, V> void write(Path file, List<Level> levels, Segment<K, V>[] segments, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (Output out = new Output(FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING))) {
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(levels.size());
+			for (Level level : levels) {
+				byte[] policy = level.policy.getBytes(StandardCharsets.UTF_8);
+				out.putInt(level.weighted ? 1 : 0);
+				out.putLong(level.capacity);
+				out.putInt(policy.length);
+				out.put(policy);
+			}
+			for (Segment<K, V> segment : segments) {
+				List<Entry<K, V>>[] byLevel = segment.snapshot();
+				for (int level = 1; level < byLevel.length; level++) {
+					writeLevel(out, level, byLevel[level], keySerializer, valueSerializer);
+				}
+			}
+			out.flush();
+			out.channel.force(false);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// Encode the entries of a level and write them as one or more chunks
+	private static <K, V> void writeLevel(Output out, int level, List<Entry<K, V>> entries, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer) throws IOException {
+		List<byte[]> records = new ArrayList<>();
+		List<Integer> frequencies = new ArrayList<>();
+		long size = 0;
+		for (Entry<K, V> entry : entries) {
+			byte[] key = keySerializer.serialize(entry.key);
+			byte[] value = valueSerializer.serialize(entry.value);
+			long recordSize = RECORD_HEADER + (long) key.length + value.length;
+			if (recordSize > MAX_RECORD_SIZE) {
+				throw new IOException("Entry of " + recordSize + " bytes at level " + level
+						+ " is larger than a snapshot chunk can map");
+			}
+			if (size > 0 && size + recordSize > MAX_CHUNK_SIZE) {
+				writeChunk(out, level, records, frequencies, size);
+				records.clear();
+				frequencies.clear();
+				size = 0;
+			}
+			records.add(key);
+			records.add(value);
+			frequencies.add(entry.frequency);
+			size += recordSize;
+		}
+		if (size > 0) {
+			writeChunk(out, level, records, frequencies, size);
+		}
+	}
+
+	private static void writeChunk(Output out, int level, List<byte[]> records, List<Integer> frequencies, long size)
+			throws IOException {
+		out.putInt(level);
+		out.putInt(frequencies.size());
+		out.putLong(size);
+		for (int i = 0; i < frequencies.size(); i++) {
+			byte[] key = records.get(2 * i);
+			byte[] value = records.get(2 * i + 1);
+			out.putInt(key.length);
+			out.putInt(value.length);
+			out.putInt(frequencies.get(i));
+			out.put(key);
+			out.put(value);
+		}
+	}
+
+	/**
+	 * Buffered writes to a channel, payloads larger than the buffer go straight through.
+	 */
+	private static final class Output implements Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+
+		private void reserve(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void putInt(int value) throws IOException {
+			reserve(Integer.BYTES);
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) throws IOException {
+			reserve(Long.BYTES);
+			buffer.putLong(value);
+		}
+
+		void put(byte[] bytes) throws IOException {
+			if (bytes.length > buffer.capacity()) {
+				flush();
+				ByteBuffer payload = ByteBuffer.wrap(bytes);
+				while (payload.hasRemaining()) {
+					channel.write(payload);
+				}
+				return;
+			}
+			reserve(bytes.length);
+			buffer.put(bytes);
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Opens a snapshot and reads its layout, the entries are only decoded by
+	 * {@link Reader#decode(Serializer, Serializer)}.
+	 */
+	static Reader open(Path file) throws IOException {
+		return new Reader(file);
+	}
+
+	static final class Reader implements Closeable {
+		private final FileChannel channel;
+		private final List<Level> levels;
+		private final List<MappedByteBuffer> chunks;
+
+		private Reader(Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.levels = new ArrayList<>();
+			this.chunks = new ArrayList<>();
+			try {
+				long position = readLayout();
+				long size = channel.size();
+				ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER);
+				while (position < size) {
+					header.clear();
+					readFully(header, position);
+					long length = header.getLong(8);
+					long maxLength = header.getInt(4) == 1 ? MAX_RECORD_SIZE : MAX_CHUNK_SIZE;
+					if (length < 0 || length > maxLength || position + CHUNK_HEADER + length > size) {
+						throw new IOException("Truncated snapshot chunk at " + position);
+					}
+					// Mapped lazily, the pages are only read in when the chunk is decoded
+					chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, position, CHUNK_HEADER + length));
+					position += CHUNK_HEADER + length;
+				}
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		// Read the header and return the position of the first chunk
+		private long readLayout() throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(12);
+			readFully(header, 0);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("Not a LevelCache snapshot, or of an unsupported version");
+			}
+			int levelCount = header.getInt(8);
+			if (levelCount < 0) {
+				throw new IOException("Invalid level count: " + levelCount);
+			}
+			long position = header.capacity();
+			ByteBuffer level = ByteBuffer.allocate(16);
+			for (int i = 0; i < levelCount; i++) {
+				level.clear();
+				readFully(level, position);
+				int policyLength = level.getInt(12);
+				if (policyLength < 0 || policyLength > channel.size() - position - level.capacity()) {
+					throw new IOException("Invalid policy length at " + position);
+				}
+				ByteBuffer policy = ByteBuffer.allocate(policyLength);
+				readFully(policy, position + level.capacity());
+				levels.add(new Level(new String(policy.array(), StandardCharsets.UTF_8), level.getInt(0) != 0,
+						level.getLong(4)));
+				position += level.capacity() + policy.capacity();
+			}
+			return position;
+		}
+
+		private void readFully(ByteBuffer buffer, long position) throws IOException {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new IOException("Truncated snapshot");
+				}
+			}
+		}
+
+		List<Level> getLevels() {
+			return levels;
+		}
+
+		/**
+		 * Decodes every chunk, in parallel, and returns them in file order.
+		 *
+		 * @throws IOException if a chunk is corrupted
+		 */
+		<K, V> List<Chunk<K, V>> decode(Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+			List<ForkJoinTask<Chunk<K, V>>> tasks = new ArrayList<>(chunks.size());
+			int levelCount = levels.size();
+			for (MappedByteBuffer chunk : chunks) {
+				tasks.add(ForkJoinTask.adapt(() -> decode(chunk.duplicate(), levelCount, keySerializer, valueSerializer)));
+			}
+			try {
+				ForkJoinTask.invokeAll(tasks);
+			} catch (RuntimeException e) {
+				// The tasks wrap the IOException of a corrupted chunk
+				for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+				}
+				throw e;
+			}
+			List<Chunk<K, V>> decoded = new ArrayList<>(tasks.size());
+			for (ForkJoinTask<Chunk<K, V>> task : tasks) {
+				decoded.add(task.join());
+			}
+			return decoded;
+		}
+
+		// Every length is checked against the bytes left in the chunk before it is trusted
+		private static <K, V> Chunk<K, V> decode(ByteBuffer chunk, int levelCount, Serializer<K> keySerializer,
+				Serializer<V> valueSerializer) throws IOException {
+			int level = chunk.getInt();
+			int count = chunk.getInt();
+			chunk.getLong();
+			if (level < 1 || level > levelCount) {
+				throw new IOException("Invalid snapshot chunk level: " + level);
+			}
+			if (count < 0 || (long) count * RECORD_HEADER > chunk.remaining()) {
+				throw new IOException("Invalid snapshot chunk entry count: " + count);
+			}
+			List<Entry<K, V>> entries = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				if (chunk.remaining() < RECORD_HEADER) {
+					throw new IOException("Truncated snapshot record");
+				}
+				int keyLength = chunk.getInt();
+				int valueLength = chunk.getInt();
+				int frequency = chunk.getInt();
+				if (keyLength < 0 || valueLength < 0 || (long) keyLength + valueLength > chunk.remaining()) {
+					throw new IOException("Invalid snapshot record lengths: " + keyLength + ", " + valueLength);
+				}
+				byte[] key = new byte[keyLength];
+				byte[] value = new byte[valueLength];
+				chunk.get(key);
+				chunk.get(value);
+				entries.add(new Entry<>(keySerializer.deserialize(key), valueSerializer.deserialize(value), frequency));
+			}
+			return new Chunk<>(level, entries);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.levelcache.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expiry policy of an entry: how long after its last write, and how long after
+ * its last read or write, the entry is removed from the cache.
+ * <p>
+ * Durations of zero disable the corresponding expiry. When both are set, the
+ * entry expires as soon as either one elapses.
+ * </p>
+ */
+public final class Expiration {
+
+	private static final Expiration NEVER = new Expiration(0, 0);
+
+	private final long afterWriteNanos;
+	private final long afterAccessNanos;
+
+	private Expiration(long afterWriteNanos, long afterAccessNanos) {
+		this.afterWriteNanos = afterWriteNanos;
+		this.afterAccessNanos = afterAccessNanos;
+	}
+
+	private static long toNanos(long duration, TimeUnit unit) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("Invalid duration: " + duration);
+		}
+		return unit.toNanos(duration);
+	}
+
+	/**
+	 * Returns the policy of entries that never expire.
+	 */
+	public static Expiration never() {
+		return NEVER;
+	}
+
+	/**
+	 * Returns a policy expiring the entry once the duration has elapsed since it was written.
+	 */
+	public static Expiration afterWrite(long duration, TimeUnit unit) {
+		return new Expiration(toNanos(duration, unit), 0);
+	}
+
+	/**
+	 * Returns a policy expiring the entry once the duration has elapsed since it was last read or written.
+	 */
+	public static Expiration afterAccess(long duration, TimeUnit unit) {
+		return new Expiration(0, toNanos(duration, unit));
+	}
+
+	/**
+	 * Returns a copy of this policy also expiring the entry after its last write.
+	 */
+	public Expiration andAfterWrite(long duration, TimeUnit unit) {
+		return new Expiration(toNanos(duration, unit), afterAccessNanos);
+	}
+
+	/**
+	 * Returns a copy of this policy also expiring the entry after its last access.
+	 */
+	public Expiration andAfterAccess(long duration, TimeUnit unit) {
+		return new Expiration(afterWriteNanos, toNanos(duration, unit));
+	}
+
+	/**
+	 * Returns the duration after the last write, in nanoseconds, 0 if disabled.
+	 */
+	public long getAfterWriteNanos() {
+		return afterWriteNanos;
+	}
+
+	/**
+	 * Returns the duration after the last access, in nanoseconds, 0 if disabled.
+	 */
+	public long getAfterAccessNanos() {
+		return afterAccessNanos;
+	}
+
+	boolean isEnabled() {
+		return afterWriteNanos > 0 || afterAccessNanos > 0;
+	}
+}
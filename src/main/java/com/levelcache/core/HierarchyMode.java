@@ -0,0 +1,21 @@
+package com.levelcache.core;
+
+/**
+ * How the levels of a {@link LevelCache} share their keys.
+ */
+public enum HierarchyMode {
+  /**
+   * Exclusive, a key lives in exactly one level and leaves its old level on every
+   * move. The levels add up their capacities.
+   */
+  EXCLUSIVE,
+
+  /**
+   * Inclusive, every level holds a copy of the keys of the levels above it. Writes
+   * go through to every level, and an entry evicted from a level is still present
+   * in the next one, so demoting it costs nothing. The capacity of the cache is
+   * that of its last level.
+   */
+  INCLUSIVE;
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.levelcache.core;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Maps each key of a {@link Segment} to the level holding it.
+ * <p>
+ * The directory is an open-addressing table with linear probing over two
+ * parallel arrays, the keys and their levels as primitive {@code short}s, so an
+ * entry costs a reference and two bytes instead of a map node and a boxed
+ * {@code Integer}. Removals shift the following entries back rather than leaving
+ * tombstones, which keeps every probe sequence as short as the load allows.
+ * </p>
+ * <p>
+ * Level 0 stands for an absent key. The directory is not thread-safe, lookups
+ * may run concurrently as long as the owning segment excludes writers.
+ * </p>
+ */
+final class KeyDirectory<K> {
+
+	static final int MAX_LEVEL = Short.MAX_VALUE;
+	private static final int MIN_CAPACITY = 16;
+
+	private Object[] keys;
+	private short[] levels;
+	private int mask;
+	private int threshold;
+	private int size;
+
+	KeyDirectory() {
+		allocate(MIN_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		levels = new short[capacity];
+		mask = capacity - 1;
+		// Linear probing degrades quickly past two thirds full
+		threshold = capacity / 3 * 2;
+		size = 0;
+	}
+
+	// Mix the bits differently from the segment selection, which uses the low ones of the same hash
+	private static int slot(Object key, int mask) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Returns the level of the key, or 0 if the key is not in the directory.
+	 */
+	int get(Object key) {
+		Object[] keys = this.keys;
+		int mask = this.mask;
+		for (int i = slot(key, mask);; i = (i + 1) & mask) {
+			Object candidate = keys[i];
+			if (candidate == null) {
+				return 0;
+			}
+			if (candidate == key || candidate.equals(key)) {
+				return levels[i];
+			}
+		}
+	}
+
+	/**
+	 * Sets the level of the key and returns its previous level, 0 if it had none.
+	 */
+	int put(K key, int level) {
+		for (int i = slot(key, mask);; i = (i + 1) & mask) {
+			Object candidate = keys[i];
+			if (candidate == null) {
+				keys[i] = key;
+				levels[i] = (short) level;
+				if (++size > threshold) {
+					resize();
+				}
+				return 0;
+			}
+			if (candidate == key || candidate.equals(key)) {
+				int previous = levels[i];
+				levels[i] = (short) level;
+				return previous;
+			}
+		}
+	}
+
+	/**
+	 * Removes the key and returns its level, 0 if it was not in the directory.
+	 */
+	int remove(Object key) {
+		for (int i = slot(key, mask);; i = (i + 1) & mask) {
+			Object candidate = keys[i];
+			if (candidate == null) {
+				return 0;
+			}
+			if (candidate == key || candidate.equals(key)) {
+				int previous = levels[i];
+				delete(i);
+				--size;
+				return previous;
+			}
+		}
+	}
+
+	// Close the gap left at the slot by moving back the entries probed past it
+	private void delete(int hole) {
+		for (int i = (hole + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+			int home = slot(keys[i], mask);
+			// The entry may only move to a hole lying between its home slot and its slot
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = keys[i];
+				levels[hole] = levels[i];
+				hole = i;
+			}
+		}
+		keys[hole] = null;
+		levels[hole] = 0;
+	}
+
+	private void resize() {
+		Object[] oldKeys = keys;
+		short[] oldLevels = levels;
+		int oldSize = size;
+		allocate(oldKeys.length << 1);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int j = slot(oldKeys[i], mask);
+				while (keys[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				levels[j] = oldLevels[i];
+			}
+		}
+		size = oldSize;
+	}
+
+	/**
+	 * Maps the level of every key through the function, which must not return 0.
+	 * Used to renumber the keys when a level is inserted or removed.
+	 */
+	void replaceLevels(IntUnaryOperator mapping) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				levels[i] = (short) mapping.applyAsInt(levels[i]);
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		allocate(MIN_CAPACITY);
+	}
+}
@@ -9,25 +9,38 @@
  */
 package com.levelcache.core;
 
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 import com.levelcache.exception.CacheBulkReadingException;
 import com.levelcache.exception.CacheReadingException;
+import com.levelcache.exception.CacheSnapshotException;
 import com.levelcache.exception.CacheWritingException;
 import com.levelcache.exception.LevelCreationException;
 import com.levelcache.exception.LevelOutOfBoundException;
 import com.levelcache.exception.LevelRemoveException;
+import com.levelcache.factory.Status;
+import com.levelcache.stats.CacheStats;
 
 /**
  * This interface defines the public API for managing a multilevel cache system.
  * It includes methods for dynamic cache level management, data retrieval,
  * insertion, and displaying cache content.
+ *
+ * @param <K> the type of keys maintained by the cache
+ * @param <V> the type of cached values
  */
-public interface LevelCache {
+public interface LevelCache<K, V> extends AutoCloseable {
 	
     /**
      * Adds a new cache level with the specified size and eviction policy.
+     * When striping is enabled, the size is split evenly over the segments of
+     * the cache, one per unit of
+     * {@link com.levelcache.config.CacheConfiguration#getConcurrencyLevel()},
+     * so a level smaller than the number of segments is rejected.
      * 
      * @param size the maximum number of entries that the cache level can hold
      * @param evictionPolicy the eviction policy to be used (e.g., "LRU" or "LFU")
@@ -36,39 +49,116 @@ public interface LevelCache {
 	public void addLevel(int size, String evictionPolicy) throws LevelOutOfBoundException, LevelCreationException;
 	
     /**
-     * Removes a cache level identified by its unique ID.
+     * Adds a new cache level whose capacity is a total weight rather than a number
+     * of entries. Entries are weighed by {@link com.levelcache.config.CacheConfiguration#getWeigher()},
+     * which by default estimates their size in bytes, and the level evicts until its
+     * weight is back under the budget. Like the size of a level, the budget is split
+     * evenly over the segments and cannot be smaller than their number.
+     * 
+     * @param maxWeight the maximum total weight of the entries that the cache level can hold
+     * @param evictionPolicy the eviction policy to be used (e.g., "LRU" or "LFU")
+     * @throws LevelOutOfBoundException, LevelCreationException 
+     */
+	public void addWeightedLevel(long maxWeight, String evictionPolicy) throws LevelOutOfBoundException, LevelCreationException;
+	
+    /**
+     * Inserts a new cache level at the given position, the levels from that
+     * position down move one level lower. The new level starts empty, its size
+     * is split over the segments as for {@link #addLevel(int, String)}.
+     * 
+     * @param id the position of the new level, from 1 to one past the last level
+     * @param size the maximum number of entries that the cache level can hold
+     * @param evictionPolicy the eviction policy to be used (e.g., "LRU" or "LFU")
+     * @throws LevelOutOfBoundException, LevelCreationException 
+     */
+	public void insertLevel(int id, int size, String evictionPolicy) throws LevelOutOfBoundException, LevelCreationException;
+	
+    /**
+     * Removes a cache level identified by its unique ID. The levels below it move
+     * one level up, and its entries migrate in the background to the next level,
+     * or to the level above when it was the last one. They stay readable until then.
      * 
      * @param id the unique identifier of the cache level to remove
      * @throws RemoveLevelException if the cache level cannot be removed (e.g., if it doesn't exist)
      */
 	public void removeLevel(int id) throws LevelRemoveException;
 	
+    /**
+     * Changes the capacity of a cache level, keeping its eviction policy. The
+     * entries migrate into the resized level in the background, those that no
+     * longer fit cascade to the levels below.
+     * 
+     * @param id the unique identifier of the cache level to resize
+     * @param capacity the new number of entries, or the new weight of a weighted level
+     * @throws LevelOutOfBoundException, LevelCreationException 
+     */
+	public void resizeLevel(int id, long capacity) throws LevelOutOfBoundException, LevelCreationException;
+	
+    /**
+     * Returns the status of the cache: {@link Status#MAINTENANCE} while the entries
+     * of a removed or resized level are migrating, {@link Status#UNINITIALIZED}
+     * while it has no level.
+     * 
+     * @return the status of the cache
+     */
+	public Status getStatus();
+	
     /**
      * Retrieves a value from the cache by its key.
      * 
      * @param key the key associated with the value to be retrieved
      * @return the value associated with the key, or null if not found
-     * @throws CacheReadingException if there is an issue retrieving the value from the cache
+     * @throws CacheReadingException if there is an issue retrieving the value from the cache,
+     *         or if the key is not an instance of the configured key type
      */
-	public String get(String key) throws CacheReadingException;
+	public V get(K key) throws CacheReadingException;
 	
     /**
-     * Retrieves a list of values corresponding to the provided list of keys.
+     * Retrieves a value from the cache by its key, loading it on a miss.
+     * The loaded value is inserted at L1 like a regular {@link #put(Object, Object)}.
+     * Concurrent misses on the same key share a single call to a loader, the other
+     * callers wait for its result instead of loading the key again.
      * 
-     * @param keys a list of keys for which values need to be fetched
-     * @return a list of values corresponding to the provided keys
+     * @param key the key associated with the value to be retrieved
+     * @param loader the loader computing the value of the key on a miss
+     * @return the cached or loaded value, or null if the loader returned null
+     * @throws CacheReadingException if the key is not an instance of the configured key type,
+     *         or if the loader failed or returned a value of the wrong type
+     */
+	public V get(K key, CacheLoader<? super K, ? extends V> loader) throws CacheReadingException;
+	
+    /**
+     * Retrieves the values of the provided keys. Keys are resolved level by level,
+     * each level being read once for all of its keys, and large batches are read
+     * in parallel.
+     * 
+     * @param keys the keys for which values need to be fetched
+     * @return the found keys mapped to their values, missing keys are left out
      * @throws CacheBulkReadingException if there is an issue retrieving the values from the cache
      */
-	public List<String> getAll(List<String> keys) throws CacheBulkReadingException;
+	public Map<K, V> getAll(Collection<? extends K> keys) throws CacheBulkReadingException;
 	
     /**
      * Inserts a key-value pair into the cache.
      * 
      * @param key the key to associate with the value
      * @param value the value to be stored in the cache
-     * @throws CacheWritingException if there is an issue inserting the data into the cache
+     * @throws CacheWritingException if there is an issue inserting the data into the cache,
+     *         or if the key or value is not an instance of the configured type
+     */
+	public void put(K key, V value) throws CacheWritingException;
+	
+    /**
+     * Inserts a key-value pair into the cache with its own expiry, overriding the
+     * defaults of the configuration. Expired entries read as misses.
+     * 
+     * @param key the key to associate with the value
+     * @param value the value to be stored in the cache
+     * @param expiration the expiry of the entry, {@link Expiration#never()} for none
+     * @throws CacheWritingException if there is an issue inserting the data into the cache,
+     *         or if the key or value is not an instance of the configured type
      */
-	public void put(String key, String value) throws CacheWritingException;
+	public void put(K key, V value, Expiration expiration) throws CacheWritingException;
 	
     /**
      * Inserts multiple key-value pairs into the cache in bulk.
@@ -76,7 +166,7 @@ public interface LevelCache {
      * @param data a map containing key-value pairs to be inserted into the cache
      * @throws CacheBulkReadingException if there is an issue inserting the data into the cache
      */
-	public void putAll(Map<String, String> data) throws CacheBulkReadingException;
+	public void putAll(Map<? extends K, ? extends V> data) throws CacheBulkReadingException;
 	
     /**
      * Displays the content of all cache levels.
@@ -84,15 +174,99 @@ public interface LevelCache {
      */
 	public void display();
 	
+	/**
+	 * Returns a weakly consistent spliterator over the entries of every level,
+	 * from L1 down, each with the level it was found in. The scan copies
+	 * nothing up front and holds no lock across its traversal, so it never
+	 * blocks writers and never throws
+	 * {@link java.util.ConcurrentModificationException}. It may or may not
+	 * reflect the writes made while it runs, and a key moving between levels
+	 * meanwhile may be seen twice or not at all. In inclusive mode every copy
+	 * of a key is seen, once per level holding it. Like {@link #get(Object)},
+	 * the scan skips the entries that have expired, even before the maintenance
+	 * removes them, and unlike it, never extends an expiry after access. The
+	 * spliterator splits, for parallel traversal.
+	 *
+	 * @return a spliterator over the entries of the cache
+	 */
+	public Spliterator<LevelEntry<K, V>> spliterator();
+	
+	/**
+	 * Returns a sequential stream over the entries of every level, with the
+	 * guarantees of {@link #spliterator()}. Call {@link Stream#parallel()} on it
+	 * to scan a large cache in parallel.
+	 *
+	 * @return a stream over the entries of the cache
+	 */
+	public Stream<LevelEntry<K, V>> stream();
+	
+	/**
+	 * Performs any pending maintenance, such as promoting the keys recently read
+	 * from lower levels back up to L1, removing the expired entries and completing
+	 * the migration of the levels being removed or resized. Maintenance also runs as part of regular
+	 * writes, so calling this is only needed to observe its effects eagerly.
+	 */
+	public void cleanUp();
+	
+	/**
+	 * Writes every level, with the eviction order or access frequencies of its
+	 * entries, to a binary snapshot file. Writers only wait for the copy of the
+	 * segment they hit, level changes wait for the whole dump. Expired entries
+	 * are left out, and the file is replaced atomically once complete.
+	 *
+	 * @param file the file to write
+	 * @throws CacheSnapshotException if the file cannot be written or an entry cannot be serialized
+	 */
+	public void saveSnapshot(Path file) throws CacheSnapshotException;
+	
+	/**
+	 * Loads a snapshot written by {@link #saveSnapshot(Path)} into this cache,
+	 * which must have no levels yet. The levels of the snapshot are created with
+	 * their policy and capacity, and filled back with their entries in eviction
+	 * order. Restored entries get the default expiry of the configuration.
+	 *
+	 * @param file the snapshot to load
+	 * @throws CacheSnapshotException if the cache has levels, or the snapshot cannot be read
+	 */
+	public void loadSnapshot(Path file) throws CacheSnapshotException;
+	
+	/**
+	 * Returns a snapshot of the statistics of the cache, all zero unless
+	 * {@link com.levelcache.config.CacheConfiguration#isStatisticsEnabled()}.
+	 */
+	public CacheStats stats();
+	
+	/**
+	 * Returns a non-blocking view of this cache, whose operations run on the
+	 * executor set in the configuration.
+	 */
+	public AsyncLevelCache<K, V> async();
+	
 	/**
 	 * Clear the cache to it's original state.
 	 * Use with caution.
 	 */
 	public void clear();
 	
+	/**
+	 * Clears the cache and withdraws its statistics from JMX, which frees its
+	 * name for another cache. The cache must not be used once closed.
+	 */
+	@Override
+	public void close();
+	
 	/**
 	 * Returns the number of levels the instance has. 
 	 */
 	public int getLevelCount();
 	
+	/**
+	 * Returns the current weight of a cache level, which is its number of entries
+	 * unless the level was added with {@link #addWeightedLevel(long, String)}.
+	 * 
+	 * @param id the unique identifier of the cache level
+	 * @return the weight of the level, or 0 if there is no such level
+	 */
+	public long getLevelWeight(int id);
+	
 }
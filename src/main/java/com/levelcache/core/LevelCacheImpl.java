@@ -15,172 +15,585 @@
 
 package com.levelcache.core;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
 
 import com.levelcache.config.CacheConfiguration;
-import com.levelcache.service.CacheUnit;
-import com.levelcache.service.CacheUnitProvider;
-import com.levelcache.storage.StorageEngine;
 
 import com.levelcache.exception.CacheBulkReadingException;
 import com.levelcache.exception.CacheBulkWritingException;
 import com.levelcache.exception.CacheInitializationException;
 import com.levelcache.exception.CacheReadingException;
+import com.levelcache.exception.CacheSerializationException;
+import com.levelcache.exception.CacheSnapshotException;
 import com.levelcache.exception.CacheWritingException;
 import com.levelcache.exception.LevelCreationException;
 import com.levelcache.exception.LevelOutOfBoundException;
 import com.levelcache.exception.LevelRemoveException;
+import com.levelcache.factory.Status;
+import com.levelcache.service.CacheUnit;
+import com.levelcache.service.CacheUnitProvider;
+import com.levelcache.stats.CacheStatistics;
+import com.levelcache.stats.CacheStats;
+import com.levelcache.stats.ConcurrentStatsCounter;
+import com.levelcache.stats.StatsCounter;
+import com.levelcache.storage.Weigher;
 
 /**
- * 
+ * Default {@link LevelCache} implementation.
+ * <p>
+ * The key space is split into {@link CacheConfiguration#getConcurrencyLevel()}
+ * independent segments, each guarded by its own lock. Reads and writes only hold
+ * the global lock in shared mode, so writes to different segments proceed in
+ * parallel; the global lock is taken exclusively for level management.
+ * </p>
+ * <p>
+ * Keys read from a lower level are promoted back to L1 in batches by the
+ * segment maintenance step, see {@link #cleanUp()}.
+ * </p>
+ * <p>
+ * Levels are inserted, removed and resized under the global lock, which only
+ * renumbers the key directory of each segment. The entries of a removed or
+ * resized level are then moved in the background, on a daemon thread, while
+ * the cache keeps serving them; the cache reports {@link Status#MAINTENANCE}
+ * until they have all reached their new level.
+ * </p>
+ * <p>
+ * Keys and values are stored as the objects handed in. When the configuration
+ * declares a key or value type, arguments that are not instances of it are
+ * rejected before they reach any segment.
+ * </p>
  */
-public class LevelCacheImpl implements LevelCache {
+public class LevelCacheImpl<K, V> implements LevelCache<K, V> {
+
+	// Bulk reads of at least this many keys are spread over the common fork-join pool
+	private static final int PARALLEL_GET_THRESHOLD = 256;
 
 	private int indexLevel;
 	private CacheConfiguration config;
 	private final ReadWriteLock rwLock;
-	// For faster writing
-	private Map<Integer, CacheUnit> byIndexLevel;
-	// For faster reading
-	private Map<String, Integer> byKey;
+	private final Segment<K, V>[] segments;
+	// Per-thread copies of the hot keys, null unless configured
+	private final NearCache<K, V> nearCache;
+	// Runs the level migrations, its thread only lives while there is work
+	private final ExecutorService migrator;
+	// Loads in progress, shared by the concurrent misses on the same key
+	private final ConcurrentMap<K, CompletableFuture<V>> loading;
+	private final AsyncLevelCache<K, V> async;
+	// Built-in statistics, null unless enabled
+	private final ConcurrentStatsCounter statistics;
+	private final StatsCounter statsCounter;
+	// Whether the statistics are still published over JMX, until the cache is closed
+	private boolean published;
+	// Custom weigher, checked before a write reaches a segment, null when unset
+	private final Weigher<? super K, ? super V> weigher;
 
+	@SuppressWarnings("unchecked")
 	public LevelCacheImpl(CacheConfiguration config) throws CacheInitializationException {
 		if (config.getCacheName().isBlank()) {
 			throw new CacheInitializationException("Cache Name cannot be blank");
 		}
 		this.indexLevel = 0;
 		this.config = config;
-		this.byIndexLevel = new ConcurrentHashMap<>();
-		this.byKey = new ConcurrentHashMap<>();
 		this.rwLock = new ReentrantReadWriteLock();
+		this.statistics = config.isStatisticsEnabled() ? new ConcurrentStatsCounter() : null;
+		this.statsCounter = StatsCounter.combine(statistics, config.getStatsCounter());
+		this.weigher = (Weigher<? super K, ? super V>) config.getWeigher();
+		if (statistics != null) {
+			try {
+				CacheStatistics.register(config.getCacheName(), statistics);
+				published = true;
+			} catch (InstanceAlreadyExistsException e) {
+				throw new CacheInitializationException("A cache named " + config.getCacheName()
+						+ " already publishes its statistics", e);
+			} catch (JMException e) {
+				throw new CacheInitializationException("Cannot publish the statistics of " + config.getCacheName(), e);
+			}
+		}
+		this.nearCache = config.getNearCacheSize() > 0 ? new NearCache<>(config.getNearCacheSize()) : null;
+		this.segments = new Segment[config.isStripingEnabled() ? Math.max(1, config.getConcurrencyLevel()) : 1];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment<>(config, statsCounter, nearCache);
+		}
+		this.loading = new ConcurrentHashMap<>();
+		this.async = new AsyncLevelCacheImpl<>(this, config.getAsyncExecutor());
+		this.migrator = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "levelcache-migration-" + config.getCacheName());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		return segments[segmentIndex(key)];
+	}
+
+	private int segmentIndex(K key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return (h & 0x7fffffff) % segments.length;
+	}
+
+	private boolean isKeyTypeValid(Object key) {
+		return config.getKeyType() == null || config.getKeyType().isInstance(key);
+	}
+
+	private boolean isValueTypeValid(Object value) {
+		return config.getValueType() == null || config.getValueType().isInstance(value);
+	}
+
+	// A weight the levels would reject halfway through a cascade, the default weigher is always positive
+	private boolean isWeightValid(K key, V value) {
+		return weigher == null || weigher.weigh(key, value) > 0;
+	}
+
+	// Spread the level size over the segments, the first ones take the remainder
+	private int segmentCapacity(int size, int segment) {
+		return size / segments.length + (segment < size % segments.length ? 1 : 0);
 	}
 
 	@Override
 	public void addLevel(int size, String policy) throws LevelOutOfBoundException, LevelCreationException {
 		rwLock.writeLock().lock();
 		try {
-			if (size < 1) {
-				throw new LevelCreationException("Invalid size: " + size);
-			}
-			++indexLevel;
-			if (indexLevel > config.getMaxCacheLevels()) {
-				throw new LevelOutOfBoundException("Level " + indexLevel + " out of bound");
-			}
-			CacheUnit cacheUnit = CacheUnitProvider.createCacheUnit(indexLevel, size, policy);
-			byIndexLevel.put(indexLevel, cacheUnit);
+			insertLevel(indexLevel + 1, size, policy);
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void addWeightedLevel(long maxWeight, String policy) throws LevelOutOfBoundException, LevelCreationException {
+		rwLock.writeLock().lock();
+		try {
+			checkInsertion(indexLevel + 1);
+			insertLevel(indexLevel + 1, createWeightedCacheUnits(indexLevel + 1, maxWeight, policy));
 		} finally {
 			rwLock.writeLock().unlock();
 		}
 	}
 
+	@Override
+	public void insertLevel(int id, int size, String policy) throws LevelOutOfBoundException, LevelCreationException {
+		rwLock.writeLock().lock();
+		try {
+			checkInsertion(id);
+			insertLevel(id, createCacheUnits(id, size, policy));
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	private void checkInsertion(int id) throws LevelOutOfBoundException {
+		if (id < 1 || id > indexLevel + 1 || indexLevel + 1 > config.getMaxCacheLevels()
+				|| indexLevel + 1 > KeyDirectory.MAX_LEVEL) {
+			throw new LevelOutOfBoundException("Level " + id + " out of bound");
+		}
+	}
+
+	private void insertLevel(int id, CacheUnit<K, V>[] cacheUnits) {
+		for (int i = 0; i < segments.length; i++) {
+			segments[i].insertLevel(id, cacheUnits[i]);
+		}
+		++indexLevel;
+	}
+
+	// Create the storage of the level for every segment before touching any of them
+	@SuppressWarnings("unchecked")
+	private CacheUnit<K, V>[] createCacheUnits(int id, int size, String policy) throws LevelCreationException {
+		if (size < 1) {
+			throw new LevelCreationException("Invalid size: " + size);
+		}
+		if (size < segments.length) {
+			throw new LevelCreationException("Invalid size: " + size + ", below the " + segments.length
+					+ " segments the level is spread over");
+		}
+		CacheUnit<K, V>[] cacheUnits = new CacheUnit[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			cacheUnits[i] = CacheUnitProvider.createCacheUnit(id, segmentCapacity(size, i), policy, config);
+		}
+		return cacheUnits;
+	}
+
+	@SuppressWarnings("unchecked")
+	private CacheUnit<K, V>[] createWeightedCacheUnits(int id, long maxWeight, String policy) throws LevelCreationException {
+		if (maxWeight < segments.length) {
+			throw new LevelCreationException("Invalid weight: " + maxWeight + ", below the " + segments.length
+					+ " segments the level is spread over");
+		}
+		CacheUnit<K, V>[] cacheUnits = new CacheUnit[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			long segmentWeight = maxWeight / segments.length + (i < maxWeight % segments.length ? 1 : 0);
+			cacheUnits[i] = CacheUnitProvider.createWeightedCacheUnit(id, segmentWeight, policy, config);
+		}
+		return cacheUnits;
+	}
+
 	@Override
 	public void removeLevel(int id) throws LevelRemoveException {
 		rwLock.writeLock().lock();
 		try {
-			if (!byIndexLevel.containsKey(id)) {
+			if (id < 1 || id > indexLevel) {
 				throw new LevelRemoveException("Cache Level with ID: " + id + " is not found");
 			}
+			for (Segment<K, V> segment : segments) {
+				segment.removeLevel(id);
+			}
 			--indexLevel;
-			byIndexLevel.remove(id);
+			if (indexLevel == 0 && nearCache != null) {
+				// The last level took every key with it
+				nearCache.invalidateAll();
+			}
+			startMigration();
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void resizeLevel(int id, long capacity) throws LevelOutOfBoundException, LevelCreationException {
+		rwLock.writeLock().lock();
+		try {
+			if (id < 1 || id > indexLevel) {
+				throw new LevelOutOfBoundException("Level " + id + " out of bound");
+			}
+			CacheUnit<K, V> current = segments[0].getCacheUnit(id);
+			CacheUnit<K, V>[] cacheUnits;
+			if (current.getMaxWeight() > 0) {
+				cacheUnits = createWeightedCacheUnits(id, capacity, current.getEvictionPolicy());
+			} else {
+				if (capacity > Integer.MAX_VALUE) {
+					throw new LevelCreationException("Invalid size: " + capacity);
+				}
+				cacheUnits = createCacheUnits(id, (int) capacity, current.getEvictionPolicy());
+			}
+			for (int i = 0; i < segments.length; i++) {
+				segments[i].replaceLevel(id, cacheUnits[i]);
+			}
+			startMigration();
 		} finally {
 			rwLock.writeLock().unlock();
 		}
 	}
 
+	// Hand the migration of the detached entries to the background thread, one
+	// batch per lock acquisition so that traffic interleaves with it
+	private void startMigration() {
+		migrator.execute(() -> {
+			for (Segment<K, V> segment : segments) {
+				boolean pending = true;
+				while (pending) {
+					rwLock.readLock().lock();
+					try {
+						pending = segment.migrate();
+					} finally {
+						rwLock.readLock().unlock();
+					}
+				}
+			}
+		});
+	}
+
 	@Override
-	public String get(String key) throws CacheReadingException {
+	public Status getStatus() {
 		rwLock.readLock().lock();
 		try {
 			if (indexLevel < 1) {
-				throw new CacheReadingException("No levels found: " + indexLevel);
+				return Status.UNINITIALIZED;
 			}
-			if (!byKey.containsKey(key)) {
-				return null; // Cache Miss
+			for (Segment<K, V> segment : segments) {
+				if (segment.isMigrating()) {
+					return Status.MAINTENANCE;
+				}
 			}
-			return byIndexLevel.get(byKey.get(key)).getStorageEngine().findByKey(key);
+			return Status.AVAILABLE;
+		} finally {
+			rwLock.readLock().unlock();
+		}
+	}
 
+	@Override
+	public void saveSnapshot(Path file) throws CacheSnapshotException {
+		// Level changes wait for the dump, writes only for the copy of their segment
+		rwLock.readLock().lock();
+		try {
+			List<CacheSnapshot.Level> layout = new ArrayList<>(indexLevel);
+			for (int level = 1; level <= indexLevel; level++) {
+				CacheUnit<K, V> cacheUnit = segments[0].getCacheUnit(level);
+				long capacity = 0;
+				for (Segment<K, V> segment : segments) {
+					CacheUnit<K, V> unit = segment.getCacheUnit(level);
+					capacity += unit.getMaxWeight() > 0 ? unit.getMaxWeight() : unit.getCapacity();
+				}
+				layout.add(new CacheSnapshot.Level(cacheUnit.getEvictionPolicy(), cacheUnit.getMaxWeight() > 0, capacity));
+			}
+			CacheSnapshot.write(file, layout, segments, CacheUnitProvider.<K>serializer(config.getKeySerializer()),
+					CacheUnitProvider.<V>serializer(config.getValueSerializer()));
+		} catch (IOException | CacheSerializationException e) {
+			throw new CacheSnapshotException("Cannot write snapshot " + file, e);
 		} finally {
 			rwLock.readLock().unlock();
 		}
 	}
 
 	@Override
-	public void put(String key, String value) throws CacheWritingException {
+	public void loadSnapshot(Path file) throws CacheSnapshotException {
 		rwLock.writeLock().lock();
+		try {
+			if (indexLevel > 0) {
+				throw new CacheSnapshotException("Cannot load snapshot " + file + " into a cache that has levels");
+			}
+			try (CacheSnapshot.Reader reader = CacheSnapshot.open(file)) {
+				for (CacheSnapshot.Level level : reader.getLevels()) {
+					int id = indexLevel + 1;
+					checkInsertion(id);
+					if (level.weighted) {
+						insertLevel(id, createWeightedCacheUnits(id, level.capacity, level.policy));
+					} else if (level.capacity > Integer.MAX_VALUE) {
+						throw new LevelCreationException("Invalid size: " + level.capacity);
+					} else {
+						insertLevel(id, createCacheUnits(id, (int) level.capacity, level.policy));
+					}
+				}
+				List<CacheSnapshot.Chunk<K, V>> chunks = reader.decode(CacheUnitProvider.<K>serializer(config.getKeySerializer()),
+						CacheUnitProvider.<V>serializer(config.getValueSerializer()));
+				restore(chunks);
+			} catch (IOException | LevelOutOfBoundException | LevelCreationException | RuntimeException e) {
+				// Leave the cache as it was, without levels, whatever failed halfway
+				clear();
+				throw new CacheSnapshotException("Cannot load snapshot " + file, e);
+			}
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	// Route the decoded entries to their segment, keeping their order, then
+	// rebuild the segments in parallel
+	@SuppressWarnings("unchecked")
+	private void restore(List<CacheSnapshot.Chunk<K, V>> chunks) {
+		List<CacheSnapshot.Entry<K, V>>[][] bySegment = new List[segments.length][indexLevel + 1];
+		for (CacheSnapshot.Chunk<K, V> chunk : chunks) {
+			if (chunk.level > indexLevel) {
+				continue;
+			}
+			for (CacheSnapshot.Entry<K, V> entry : chunk.entries) {
+				List<CacheSnapshot.Entry<K, V>>[] byLevel = bySegment[segmentIndex(entry.key)];
+				if (byLevel[chunk.level] == null) {
+					byLevel[chunk.level] = new ArrayList<>();
+				}
+				byLevel[chunk.level].add(entry);
+			}
+		}
+		List<ForkJoinTask<?>> rebuilds = new ArrayList<>(segments.length);
+		for (int i = 0; i < segments.length; i++) {
+			Segment<K, V> segment = segments[i];
+			List<CacheSnapshot.Entry<K, V>>[] byLevel = bySegment[i];
+			rebuilds.add(ForkJoinTask.adapt(() -> segment.restore(byLevel)));
+		}
+		ForkJoinTask.invokeAll(rebuilds);
+	}
+
+	@Override
+	public V get(K key) throws CacheReadingException {
+		return lookup(key, statsCounter);
+	}
+
+	private V lookup(K key, StatsCounter stats) {
+		if (!isKeyTypeValid(key)) {
+			throw new CacheReadingException("Invalid key type: " + key.getClass().getName());
+		}
+		if (nearCache != null) {
+			// Served without any lock, the segment replays the hit against the level
+			// holding the key on its next maintenance
+			V value = nearCache.get(key);
+			if (value != null && segmentFor(key).recordNearHit(key)) {
+				return value;
+			}
+		}
+		rwLock.readLock().lock();
 		try {
 			if (indexLevel < 1) {
-				throw new CacheWritingException("No levels found: " + indexLevel);
+				throw new CacheReadingException("No levels found: " + indexLevel);
+			}
+			Segment<K, V> segment = segmentFor(key);
+			if (nearCache == null) {
+				return segment.get(key, stats);
+			}
+			// The stamp is read before the value, a write in between leaves the copy stale
+			long stamp = nearCache.stamp(key);
+			V value = segment.get(key, stats);
+			if (value != null && nearCache.isHot(key) && !segment.expires(key)) {
+				nearCache.admit(key, value, stamp);
 			}
-			insertAndCascade(key, value);
+			return value;
 
 		} finally {
-			rwLock.writeLock().unlock();
+			rwLock.readLock().unlock();
 		}
 	}
 
-	private void insertAndCascade(String key, String value) {
-		// Insert data into L1 (cache level 1)
-		CacheUnit targetCacheUnit = byIndexLevel.get(1);
-		targetCacheUnit.getStorageEngine().createPair(key, value);
+	@Override
+	public V get(K key, CacheLoader<? super K, ? extends V> loader) throws CacheReadingException {
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> inFlight = loading.putIfAbsent(key, load);
+		if (inFlight != null) {
+			return await(key, inFlight);
+		}
+		// The loader runs outside of any lock, a slow origin must not stall level management
+		try {
+			// Another load of the key may have completed between the miss and now,
+			// this second look is part of the same read for the statistics
+			value = lookup(key, StatsCounter.disabled());
+			if (value == null) {
+				value = loadAndPut(key, loader);
+			}
+			load.complete(value);
+			return value;
+		} catch (Exception e) {
+			load.completeExceptionally(e);
+			throw e instanceof CacheReadingException ? (CacheReadingException) e
+					: new CacheReadingException("Cannot load key: " + key, e);
+		} finally {
+			loading.remove(key, load);
+		}
+	}
 
-		// Check if L1 has evicted any item
-		Map.Entry<String, String> evictedKey = targetCacheUnit.getStorageEngine().getEvictedKeyIfAny();
-		// Cascade the evicted key down to the lower levels, starting from L2
-		int currentLevel = 2;
-		while (evictedKey != null && currentLevel <= indexLevel) {
-			CacheUnit lowerCacheUnit = byIndexLevel.get(currentLevel);
-			lowerCacheUnit.getStorageEngine().createPair(evictedKey.getKey(), evictedKey.getValue());
-			// Update the new level of the evictedKey from L1 (or lower)
-			byKey.put(evictedKey.getKey(), currentLevel);
-			// Check if L2 (or lower) evicts another key
-			evictedKey = lowerCacheUnit.getStorageEngine().getEvictedKeyIfAny();
-			currentLevel++;
+	private V loadAndPut(K key, CacheLoader<? super K, ? extends V> loader) throws Exception {
+		long start = System.nanoTime();
+		boolean loaded = false;
+		try {
+			V value = loader.load(key);
+			if (value != null) {
+				put(key, value);
+				loaded = true;
+			}
+			return value;
+		} finally {
+			if (loaded) {
+				statsCounter.recordLoadSuccess(System.nanoTime() - start);
+			} else {
+				statsCounter.recordLoadFailure(System.nanoTime() - start);
+			}
 		}
+	}
 
-		// If the evicted key reaches beyond the last cache level
-		if (evictedKey != null) {
-			// Cache Miss: The key is no longer in the cache system
-			byKey.remove(evictedKey.getKey());
+	private V await(K key, CompletableFuture<V> inFlight) {
+		try {
+			return inFlight.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof CacheReadingException ? (CacheReadingException) cause
+					: new CacheReadingException("Cannot load key: " + key, cause);
 		}
+	}
 
-		// Update the key map to indicate the inserted key is in L1
-		byKey.put(key, 1);
+	@Override
+	public void put(K key, V value) throws CacheWritingException {
+		put(key, value, null);
 	}
 
 	@Override
-	public void display() {
+	public void put(K key, V value, Expiration expiration) throws CacheWritingException {
+		if (!isKeyTypeValid(key)) {
+			throw new CacheWritingException("Invalid key type: " + key.getClass().getName());
+		}
+		if (!isValueTypeValid(value)) {
+			throw new CacheWritingException("Invalid value type: " + value.getClass().getName());
+		}
+		if (!isWeightValid(key, value)) {
+			throw new CacheWritingException("Invalid weight for key: " + key);
+		}
 		rwLock.readLock().lock();
 		try {
-			for (Map.Entry<Integer, CacheUnit> entry : byIndexLevel.entrySet()) {
-				StorageEngine engine = entry.getValue().getStorageEngine();
-				System.out.println("L" + entry.getKey() + ": " + engine.getSnapShort().toString());
+			if (indexLevel < 1) {
+				throw new CacheWritingException("No levels found: " + indexLevel);
 			}
+			segmentFor(key).put(key, value, expiration);
+
 		} finally {
 			rwLock.readLock().unlock();
 		}
 	}
 
 	@Override
-	public List<String> getAll(List<String> keys) throws CacheBulkReadingException {
+	public void display() {
+		int levelCount = getLevelCount();
+		Map<Integer, Map<K, V>> byLevel = new HashMap<>();
+		stream().forEach(entry -> byLevel.computeIfAbsent(entry.getLevel(), level -> new HashMap<>())
+				.put(entry.getKey(), entry.getValue()));
+		for (int level = 1; level <= levelCount; level++) {
+			System.out.println("L" + level + ": " + byLevel.getOrDefault(level, new HashMap<>()).toString());
+		}
+	}
+
+	@Override
+	public Spliterator<LevelEntry<K, V>> spliterator() {
+		// Only the level count is read under the global lock, the scan takes none
+		return new LevelSpliterator<>(segments, getLevelCount());
+	}
+
+	@Override
+	public Stream<LevelEntry<K, V>> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	@Override
+	public Map<K, V> getAll(Collection<? extends K> keys) throws CacheBulkReadingException {
+		for (K key : keys) {
+			if (!isKeyTypeValid(key)) {
+				throw new CacheBulkReadingException("Invalid key type: " + key.getClass().getName());
+			}
+		}
 		rwLock.readLock().lock();
 		try {
 			if (indexLevel < 1) {
 				throw new CacheBulkReadingException("No levels found: " + indexLevel);
 			}
-			List<String> values = new ArrayList<>();
-			for (String key : keys) {
-				if (!byKey.containsKey(key)) {
-					values.add("");
-					continue;
-				} 
-				int currentLevel = byKey.get(key);
-				String value = byIndexLevel.get(currentLevel).getStorageEngine().findByKey(key);	
-				values.add(value);
+			// Group the keys so every segment resolves its share in one pass
+			Map<Segment<K, V>, List<K>> bySegment = new HashMap<>();
+			for (K key : keys) {
+				bySegment.computeIfAbsent(segmentFor(key), s -> new ArrayList<>()).add(key);
+			}
+			// Large batches fan out over the segments and their levels
+			boolean parallel = keys.size() >= PARALLEL_GET_THRESHOLD;
+			Map<K, V> values = new HashMap<>(keys.size());
+			if (parallel && bySegment.size() > 1) {
+				bySegment.entrySet().parallelStream()
+						.map(batch -> batch.getKey().getAll(batch.getValue(), true))
+						.collect(Collectors.toList())
+						.forEach(values::putAll);
+			} else {
+				for (Map.Entry<Segment<K, V>, List<K>> batch : bySegment.entrySet()) {
+					values.putAll(batch.getKey().getAll(batch.getValue(), parallel));
+				}
 			}
 			return values;
 
@@ -190,18 +603,59 @@ public class LevelCacheImpl implements LevelCache {
 	}
 
 	@Override
-	public void putAll(Map<String, String> data) throws CacheBulkWritingException {
-		rwLock.writeLock().lock();
+	public void putAll(Map<? extends K, ? extends V> data) throws CacheBulkWritingException {
+		for (Map.Entry<? extends K, ? extends V> entry : data.entrySet()) {
+			if (!isKeyTypeValid(entry.getKey())) {
+				throw new CacheBulkWritingException("Invalid key type: " + entry.getKey().getClass().getName());
+			}
+			if (!isValueTypeValid(entry.getValue())) {
+				throw new CacheBulkWritingException("Invalid value type: " + entry.getValue().getClass().getName());
+			}
+			if (!isWeightValid(entry.getKey(), entry.getValue())) {
+				throw new CacheBulkWritingException("Invalid weight for key: " + entry.getKey());
+			}
+		}
+		rwLock.readLock().lock();
 		try {
 			if (indexLevel < 1) {
 				throw new CacheBulkWritingException("No levels found: " + indexLevel);
 			}
-			for (Map.Entry<String, String> entry : data.entrySet()) {
-				insertAndCascade(entry.getKey(), entry.getValue());
+			// Group the entries so every segment lock is taken once per batch
+			Map<Segment<K, V>, List<Map.Entry<? extends K, ? extends V>>> bySegment = new HashMap<>();
+			for (Map.Entry<? extends K, ? extends V> entry : data.entrySet()) {
+				bySegment.computeIfAbsent(segmentFor(entry.getKey()), s -> new ArrayList<>()).add(entry);
+			}
+			for (Map.Entry<Segment<K, V>, List<Map.Entry<? extends K, ? extends V>>> batch : bySegment.entrySet()) {
+				batch.getKey().putAll(batch.getValue());
 			}
 
 		} finally {
-			rwLock.writeLock().unlock();
+			rwLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public CacheStats stats() {
+		return statistics == null ? CacheStats.empty() : statistics.snapshot();
+	}
+
+	@Override
+	public AsyncLevelCache<K, V> async() {
+		return async;
+	}
+
+	@Override
+	public void cleanUp() {
+		rwLock.readLock().lock();
+		try {
+			if (indexLevel < 1) {
+				return;
+			}
+			for (Segment<K, V> segment : segments) {
+				segment.cleanUp();
+			}
+		} finally {
+			rwLock.readLock().unlock();
 		}
 	}
 
@@ -210,14 +664,50 @@ public class LevelCacheImpl implements LevelCache {
 		rwLock.writeLock().lock();
 		try {
 			indexLevel = 0;
-			byKey.clear();
-			byIndexLevel.clear();
+			for (Segment<K, V> segment : segments) {
+				segment.clear();
+			}
+			if (nearCache != null) {
+				nearCache.invalidateAll();
+			}
 
 		} finally {
 			rwLock.writeLock().unlock();
 		}
 	}
 
+	@Override
+	public void close() {
+		rwLock.writeLock().lock();
+		try {
+			clear();
+			migrator.shutdown();
+			if (published) {
+				// Only once, the name may belong to another cache by now
+				published = false;
+				CacheStatistics.unregister(config.getCacheName());
+			}
+		} catch (JMException e) {
+			// The bean is already gone
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public long getLevelWeight(int id) {
+		rwLock.readLock().lock();
+		try {
+			long weight = 0;
+			for (Segment<K, V> segment : segments) {
+				weight += segment.getWeight(id);
+			}
+			return weight;
+		} finally {
+			rwLock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public int getLevelCount() {
 		rwLock.readLock().lock();
@@ -0,0 +1,29 @@
+package com.levelcache.core;
+
+import java.util.AbstractMap;
+
+/**
+ * An entry seen by a scan of a {@link LevelCache}, along with the level it was
+ * found in. The entry is a copy, it does not write through to the cache.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the value
+ */
+public final class LevelEntry<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+
+	private static final long serialVersionUID = -3489521707442713651L;
+
+	private final int level;
+
+	LevelEntry(K key, V value, int level) {
+		super(key, value);
+		this.level = level;
+	}
+
+	/**
+	 * Returns the level the entry was found in, 1 being the highest.
+	 */
+	public int getLevel() {
+		return level;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.levelcache.core;
+
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Weakly consistent spliterator over the entries of every level of a
+ * {@link LevelCacheImpl}.
+ * <p>
+ * The scan walks the storage of each level of each segment in turn, level by
+ * level, and only takes the lock of a segment for the moment it needs to reach
+ * the storage of the next level. The storage is then traversed through its own
+ * weakly consistent spliterator, so writers are never held off by the scan.
+ * </p>
+ * <p>
+ * Splitting hands half of the remaining storages to the new spliterator, and
+ * splits the storage being traversed once it is the last one left, so large
+ * levels spread over the workers of a parallel stream.
+ * </p>
+ */
+final class LevelSpliterator<K, V> implements Spliterator<LevelEntry<K, V>> {
+
+	private final Segment<K, V>[] segments;
+	// Storages left to traverse, numbered level by level across the segments
+	private int next;
+	private final int end;
+	// Storage being traversed, and its level
+	private Spliterator<Map.Entry<K, V>> current;
+	private int level;
+
+	LevelSpliterator(Segment<K, V>[] segments, int levelCount) {
+		this(segments, 0, segments.length * levelCount);
+	}
+
+	private LevelSpliterator(Segment<K, V>[] segments, int next, int end) {
+		this.segments = segments;
+		this.next = next;
+		this.end = end;
+	}
+
+	// Reach the storage of the next level, false once none is left
+	private boolean advanceStorage() {
+		if (next >= end) {
+			return false;
+		}
+		level = next / segments.length + 1;
+		current = segments[next % segments.length].spliterator(level);
+		++next;
+		return true;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super LevelEntry<K, V>> action) {
+		while (current != null || advanceStorage()) {
+			int found = level;
+			if (current.tryAdvance(entry -> action.accept(new LevelEntry<>(entry.getKey(), entry.getValue(), found)))) {
+				return true;
+			}
+			current = null;
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super LevelEntry<K, V>> action) {
+		while (current != null || advanceStorage()) {
+			int found = level;
+			current.forEachRemaining(entry -> action.accept(new LevelEntry<>(entry.getKey(), entry.getValue(), found)));
+			current = null;
+		}
+	}
+
+	@Override
+	public Spliterator<LevelEntry<K, V>> trySplit() {
+		if (end - next > 1) {
+			int middle = next + (end - next) / 2;
+			LevelSpliterator<K, V> prefix = new LevelSpliterator<>(segments, next, middle);
+			next = middle;
+			return prefix;
+		}
+		if (current == null && !advanceStorage()) {
+			return null;
+		}
+		Spliterator<Map.Entry<K, V>> half = current.trySplit();
+		if (half == null) {
+			return null;
+		}
+		LevelSpliterator<K, V> split = new LevelSpliterator<>(segments, 0, 0);
+		split.current = half;
+		split.level = level;
+		return split;
+	}
+
+	@Override
+	public long estimateSize() {
+		// Storages are only reached lazily, their sizes are unknown up front
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return CONCURRENT | NONNULL;
+	}
+}
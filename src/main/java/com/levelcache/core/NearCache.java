@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.levelcache.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-thread L0 tier of a {@link LevelCacheImpl}, holding copies of the keys a
+ * thread reads most.
+ * <p>
+ * Every thread owns a small direct-mapped table of copies, each tagged with the
+ * version stamp its key had before the copy was read from the cache. Stamps are
+ * shared, one per stripe of the key space, and are bumped whenever a key of the
+ * stripe is written or leaves the cache. A copy is served only while its stamp
+ * is current, so a hit costs a thread-local lookup and one volatile read, and
+ * writes nothing to shared memory.
+ * </p>
+ * <p>
+ * A key is admitted once a thread reads it twice in a row through the same
+ * slot, which keeps the keys read once from churning the table. Keys with an
+ * expiry are never admitted, their reads have to reach the segment. Hits served
+ * here are buffered by the segment of their key, which replays them against the
+ * level holding the key, so its eviction policy and statistics see them.
+ * </p>
+ * <p>
+ * The copies are kept per thread, so they only pay off for threads that live
+ * long enough to read the same keys again. A virtual thread, as started by the
+ * default executor of {@link LevelCacheImpl#async()} for every operation, starts
+ * with an empty table and never gets a hit; set a pool of platform threads as
+ * the async executor to benefit from the near cache there.
+ * </p>
+ */
+final class NearCache<K, V> {
+
+	private static final int STRIPES = 1 << 12;
+
+	private final AtomicLongArray stamps;
+	private final ThreadLocal<Slots> slots;
+
+	/**
+	 * @param size the number of copies each thread keeps, rounded up to a power of two
+	 */
+	NearCache(int size) {
+		int capacity = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+		this.stamps = new AtomicLongArray(STRIPES);
+		this.slots = ThreadLocal.withInitial(() -> new Slots(capacity));
+	}
+
+	/**
+	 * Copies held by a single thread, never shared.
+	 */
+	private static final class Slots {
+		final int mask;
+		final Object[] keys;
+		final Object[] values;
+		final long[] stamps;
+		// Hash of the last key read through each slot, to detect repeated reads
+		final int[] candidates;
+
+		Slots(int capacity) {
+			this.mask = capacity - 1;
+			this.keys = new Object[capacity];
+			this.values = new Object[capacity];
+			this.stamps = new long[capacity];
+			this.candidates = new int[capacity];
+		}
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	// The slots use the low bits of the hash, the stripes the high ones
+	private static int stripe(int hash) {
+		return (hash >>> 20) & (STRIPES - 1);
+	}
+
+	/**
+	 * Returns the copy of the key held by the calling thread, or null if it has
+	 * none or its copy is stale.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(Object key) {
+		Slots s = slots.get();
+		int h = hash(key);
+		int i = h & s.mask;
+		Object candidate = s.keys[i];
+		if (candidate == null || (candidate != key && !candidate.equals(key))) {
+			return null;
+		}
+		if (s.stamps[i] != stamps.get(stripe(h))) {
+			s.keys[i] = s.values[i] = null;
+			return null;
+		}
+		return (V) s.values[i];
+	}
+
+	/**
+	 * Returns the current stamp of the key, to be read before its value.
+	 */
+	long stamp(Object key) {
+		return stamps.get(stripe(hash(key)));
+	}
+
+	/**
+	 * Records a read of the key served by the cache, and returns true if the
+	 * calling thread read it through the same slot the previous time as well.
+	 */
+	boolean isHot(Object key) {
+		Slots s = slots.get();
+		int h = hash(key);
+		int i = h & s.mask;
+		if (s.candidates[i] == h) {
+			return true;
+		}
+		s.candidates[i] = h;
+		return false;
+	}
+
+	/**
+	 * Keeps a copy of the value for the calling thread, valid while the stamp of
+	 * the key stays the one read before the value.
+	 */
+	void admit(K key, V value, long stamp) {
+		Slots s = slots.get();
+		int i = hash(key) & s.mask;
+		s.keys[i] = key;
+		s.values[i] = value;
+		s.stamps[i] = stamp;
+	}
+
+	/**
+	 * Makes every copy of the key stale, once its new value is in the cache.
+	 */
+	void invalidate(Object key) {
+		stamps.incrementAndGet(stripe(hash(key)));
+	}
+
+	void invalidateAll() {
+		for (int i = 0; i < STRIPES; i++) {
+			stamps.incrementAndGet(i);
+		}
+	}
+}
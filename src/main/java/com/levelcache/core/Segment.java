@@ -0,0 +1,966 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.levelcache.core;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.levelcache.config.CacheConfiguration;
+import com.levelcache.service.CacheUnit;
+import com.levelcache.stats.StatsCounter;
+import com.levelcache.storage.EntryVisitor;
+import com.levelcache.storage.StorageEngine;
+import com.levelcache.util.ReadBuffer;
+import com.levelcache.util.Ticker;
+
+/**
+ * An independent slice of the key space of a {@link LevelCacheImpl}.
+ * <p>
+ * Every segment owns its own lock, its own part of the key directory and its
+ * own storage for each cache level, so writes to keys that hash to different
+ * segments never contend with each other. Level management is driven by the
+ * owning cache, which serializes it behind its global lock.
+ * </p>
+ * <p>
+ * Hits below L1 are recorded in a lossy read buffer instead of being promoted
+ * on the spot, so readers only ever hold the read lock. The recorded keys are
+ * moved back up to L1 in batches by the maintenance step, which runs on writes
+ * and whenever a reader manages to take the write lock without waiting.
+ * </p>
+ * <p>
+ * Entries with an expiry get a timer in a {@link TimerWheel}. Readers treat an
+ * entry past its deadline as a miss, the maintenance step removes it from its
+ * level once its timer fires.
+ * </p>
+ * <p>
+ * In {@link HierarchyMode#EXCLUSIVE} mode the key directory holds the only level
+ * of each key. In {@link HierarchyMode#INCLUSIVE} mode it holds the highest level
+ * of the key, which is also present in every level below it.
+ * </p>
+ * <p>
+ * Levels can be inserted, removed and resized while the segment serves traffic.
+ * The directory is renumbered on the spot, while the entries of a removed or
+ * replaced level stay readable in a {@link Migration} until the background
+ * task has moved them into their new level, one batch at a time.
+ * </p>
+ */
+final class Segment<K, V> {
+
+	private static final int READ_BUFFER_SIZE = 128;
+	private static final int DRAIN_THRESHOLD = 32;
+	private static final int MIGRATION_BATCH = 64;
+
+	private int levelCount;
+	private final CacheConfiguration config;
+	private final ReadWriteLock lock;
+	// Storage of this segment for each cache level, indexed by level
+	private CacheUnit<K, V>[] byIndexLevel;
+	// Level of each key held by this segment
+	private final KeyDirectory<K> byKey;
+	// Keys hit below L1, waiting to be promoted
+	private final ReadBuffer<K> promotions;
+	// Keys served by the near cache, waiting to reach the eviction policies
+	private final ReadBuffer<K> nearHits;
+	private final StatsCounter stats;
+	private final boolean inclusive;
+	// First level that may lack keys of the levels above it in inclusive mode, 0 if none
+	private int partialLevel;
+	// Entries of a detached level moving to their new level, null when none
+	private volatile Migration<K, V> migration;
+	private final Ticker ticker;
+	private final Expiration defaultExpiration;
+	// Expiry of the keys that have one, empty when nothing expires
+	private final Map<K, TimerWheel.Timer<K>> timers;
+	private final TimerWheel<K> wheel;
+	// Per-thread copies of the hot keys, null when disabled
+	private final NearCache<K, V> nearCache;
+
+	@SuppressWarnings("unchecked")
+	Segment(CacheConfiguration config, StatsCounter stats, NearCache<K, V> nearCache) {
+		this.levelCount = 0;
+		this.config = config;
+		this.lock = new ReentrantReadWriteLock();
+		this.byIndexLevel = new CacheUnit[2];
+		this.byKey = new KeyDirectory<>();
+		this.promotions = new ReadBuffer<>(READ_BUFFER_SIZE);
+		this.nearHits = new ReadBuffer<>(READ_BUFFER_SIZE);
+		this.stats = stats;
+		this.inclusive = config.getHierarchyMode() == HierarchyMode.INCLUSIVE;
+		this.ticker = config.getTicker() == null ? Ticker.systemTicker() : config.getTicker();
+		this.defaultExpiration = Expiration.afterWrite(config.getExpireAfterWrite(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+				.andAfterAccess(config.getExpireAfterAccess(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+		this.timers = new HashMap<>();
+		this.wheel = new TimerWheel<>(ticker.read());
+		this.nearCache = nearCache;
+	}
+
+	/**
+	 * Entries of a level taken out of the hierarchy, whose keys the directory
+	 * already points at their target level. They are read from here until moved.
+	 */
+	private static final class Migration<K, V> {
+		final StorageEngine<K, V> source;
+		final int target;
+		final Iterator<K> pending;
+
+		Migration(StorageEngine<K, V> source, int target) {
+			this.source = source;
+			this.target = target;
+			this.pending = source.getSnapShort().keySet().iterator();
+		}
+	}
+
+	CacheUnit<K, V> getCacheUnit(int level) {
+		return level < byIndexLevel.length ? byIndexLevel[level] : null;
+	}
+
+	// Insert a level, the levels from its position down move one level lower
+	void insertLevel(int level, CacheUnit<K, V> cacheUnit) {
+		lock.writeLock().lock();
+		try {
+			finishMigration();
+			if (levelCount + 1 >= byIndexLevel.length) {
+				byIndexLevel = Arrays.copyOf(byIndexLevel, Math.max(levelCount + 2, byIndexLevel.length * 2));
+			}
+			System.arraycopy(byIndexLevel, level, byIndexLevel, level + 1, levelCount + 1 - level);
+			byIndexLevel[level] = cacheUnit;
+			++levelCount;
+			if (level < levelCount) {
+				byKey.replaceLevels(l -> l >= level ? l + 1 : l);
+			}
+			if (partialLevel >= level) {
+				++partialLevel;
+			}
+			if (inclusive && byKey.size() > 0) {
+				// The new level holds none of the keys above it yet
+				markPartial(level);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Remove a level, its entries migrate to the next level, or to the one above
+	// when it was the last
+	void removeLevel(int level) {
+		lock.writeLock().lock();
+		try {
+			finishMigration();
+			CacheUnit<K, V> removed = byIndexLevel[level];
+			// In inclusive mode the next level already holds the keys, unless it is partial
+			boolean covered = inclusive && level < levelCount && (partialLevel == 0 || partialLevel > level + 1);
+			System.arraycopy(byIndexLevel, level + 1, byIndexLevel, level, levelCount - level);
+			byIndexLevel[levelCount] = null;
+			--levelCount;
+			if (partialLevel > level) {
+				--partialLevel;
+			}
+			if (partialLevel > levelCount) {
+				partialLevel = 0;
+			}
+			if (levelCount == 0) {
+				promotions.drainTo(key -> {});
+				nearHits.drainTo(key -> {});
+				byKey.clear();
+				clearTimers();
+				removed.getStorageEngine().close();
+				return;
+			}
+			int target = Math.min(level, levelCount);
+			byKey.replaceLevels(l -> l > level ? l - 1 : l == level ? target : l);
+			if (covered) {
+				removed.getStorageEngine().close();
+			} else {
+				migration = new Migration<>(removed.getStorageEngine(), target);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Replace the storage of a level, its entries migrate into the new one
+	void replaceLevel(int level, CacheUnit<K, V> cacheUnit) {
+		lock.writeLock().lock();
+		try {
+			finishMigration();
+			CacheUnit<K, V> replaced = byIndexLevel[level];
+			byIndexLevel[level] = cacheUnit;
+			if (inclusive && byKey.size() > 0) {
+				markPartial(level);
+			}
+			migration = new Migration<>(replaced.getStorageEngine(), level);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void markPartial(int level) {
+		partialLevel = partialLevel == 0 ? level : Math.min(partialLevel, level);
+	}
+
+	boolean isMigrating() {
+		return migration != null;
+	}
+
+	/**
+	 * Moves the next batch of migrating entries, and returns true while some are left.
+	 */
+	boolean migrate() {
+		lock.writeLock().lock();
+		try {
+			return migrate(MIGRATION_BATCH);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Move up to the given number of entries, the write lock must be held
+	private boolean migrate(int batchSize) {
+		Migration<K, V> m = migration;
+		if (m == null) {
+			return false;
+		}
+		for (int i = 0; i < batchSize && m.pending.hasNext(); i++) {
+			migrate(m, m.pending.next());
+		}
+		if (m.pending.hasNext()) {
+			return true;
+		}
+		migration = null;
+		m.source.close();
+		return false;
+	}
+
+	private void finishMigration() {
+		while (migrate(Integer.MAX_VALUE)) {
+			// Drained in a single batch
+		}
+	}
+
+	private void migrate(Migration<K, V> m, K key) {
+		V value = m.source.deleteByKey(key);
+		if (value == null || byKey.get(key) != m.target) {
+			// Written, promoted or dropped since the level was detached
+			return;
+		}
+		StorageEngine<K, V> engine = byIndexLevel[m.target].getStorageEngine();
+		stats.recordInsertion(m.target);
+		if (inclusive) {
+			engine.createPair(key, value);
+			for (Map.Entry<K, V> evictedKey : engine.getEvictedEntries()) {
+				invalidate(evictedKey, m.target);
+			}
+		} else {
+			cascade(engine.createPairs(Collections.singletonList(new AbstractMap.SimpleEntry<>(key, value))), m.target + 1);
+		}
+	}
+
+	// Read the key from its level, or from the entries still migrating into it
+	private V findAt(int level, K key) {
+		V value = byIndexLevel[level].getStorageEngine().findByKey(key);
+		return value != null ? value : findMigrating(level, key);
+	}
+
+	private V findMigrating(int level, K key) {
+		Migration<K, V> m = migration;
+		return m != null && m.target == level ? m.source.findByKey(key) : null;
+	}
+
+	// Delete the key from its level, along with any copy left to migrate
+	private V deleteAt(int level, K key) {
+		V value = byIndexLevel[level].getStorageEngine().deleteByKey(key);
+		Migration<K, V> m = migration;
+		if (m != null) {
+			V migrating = m.source.deleteByKey(key);
+			if (value == null && m.target == level) {
+				value = migrating;
+			}
+		}
+		return value;
+	}
+
+	V get(K key, StatsCounter stats) {
+		V value;
+		boolean expired = false;
+		lock.readLock().lock();
+		try {
+			int level = byKey.get(key);
+			if (level == 0) {
+				stats.recordMiss();
+				return null; // Cache Miss
+			}
+			if (!timers.isEmpty() && hasExpired(key, ticker.read())) {
+				stats.recordMiss();
+				expired = true;
+				value = null;
+			} else {
+				value = findAt(level, key);
+				stats.recordHit(level);
+				if (level == 1) {
+					return value;
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (expired || !promotions.offer(key) || promotions.size() >= DRAIN_THRESHOLD) {
+			tryToCleanUp();
+		}
+		return value;
+	}
+
+	// Check the deadline of the key and extend it when it expires after access,
+	// the read lock must be held
+	private boolean hasExpired(K key, long now) {
+		TimerWheel.Timer<K> timer = timers.get(key);
+		if (timer == null) {
+			return false;
+		}
+		if (timer.deadline() <= now) {
+			return true;
+		}
+		if (timer.accessDuration > 0) {
+			timer.accessTime = now;
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	Map<K, V> getAll(Collection<? extends K> keys, boolean parallel) {
+		Map<K, V> found = new HashMap<>(keys.size());
+		boolean promote = false;
+		lock.readLock().lock();
+		try {
+			boolean expiring = !timers.isEmpty();
+			long now = expiring ? ticker.read() : 0;
+			// Resolve every key against the directory once, grouped by level
+			List<K>[] byLevel = new List[byIndexLevel.length];
+			for (K key : keys) {
+				int level = byKey.get(key);
+				if (level == 0) {
+					stats.recordMiss();
+				} else if (expiring && hasExpired(key, now)) {
+					stats.recordMiss();
+					promote = true;
+				} else {
+					if (byLevel[level] == null) {
+						byLevel[level] = new ArrayList<>();
+					}
+					byLevel[level].add(key);
+				}
+			}
+			// Enter the engine of each level once for its whole group
+			List<ForkJoinTask<Map<K, V>>> lookups = new ArrayList<>();
+			for (int level = 1; level < byLevel.length; level++) {
+				if (byLevel[level] != null) {
+					StorageEngine<K, V> engine = byIndexLevel[level].getStorageEngine();
+					List<K> group = byLevel[level];
+					lookups.add(ForkJoinTask.adapt(() -> engine.findByKeys(group)));
+				}
+			}
+			if (parallel && lookups.size() > 1) {
+				ForkJoinTask.invokeAll(lookups);
+			} else {
+				lookups.forEach(ForkJoinTask::invoke);
+			}
+			for (ForkJoinTask<Map<K, V>> lookup : lookups) {
+				found.putAll(lookup.join());
+			}
+			for (int level = 1; level < byLevel.length; level++) {
+				if (byLevel[level] != null) {
+					for (K key : byLevel[level]) {
+						if (!found.containsKey(key)) {
+							V value = findMigrating(level, key);
+							if (value == null) {
+								stats.recordMiss();
+								continue;
+							}
+							found.put(key, value);
+						}
+						stats.recordHit(level);
+						// Hits below L1 are promoted like single reads
+						promote |= level > 1 && !promotions.offer(key);
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (promote || promotions.size() >= DRAIN_THRESHOLD) {
+			tryToCleanUp();
+		}
+		return found;
+	}
+
+	// Run the maintenance step unless another thread holds the segment
+	private void tryToCleanUp() {
+		if (lock.writeLock().tryLock()) {
+			try {
+				maintenance();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	void cleanUp() {
+		lock.writeLock().lock();
+		try {
+			maintenance();
+			finishMigration();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Apply the pending near hits and promotions and drop the expired entries,
+	// the write lock must be held
+	private void maintenance() {
+		nearHits.drainTo(this::replayNearHit);
+		promotions.drainTo(this::promote);
+		if (!timers.isEmpty()) {
+			long now = ticker.read();
+			wheel.advance(now, timer -> {
+				long deadline = timer.deadline();
+				if (deadline > now) {
+					// Read since it was scheduled, wait for the new deadline
+					timer.time = deadline;
+					wheel.schedule(timer);
+					return;
+				}
+				if (timers.get(timer.key) != timer) {
+					return;
+				}
+				timers.remove(timer.key);
+				int level = byKey.remove(timer.key);
+				if (level != 0) {
+					deleteCopies(timer.key, level, inclusive ? levelCount : level);
+					stats.recordExpiration(level);
+					invalidateNear(timer.key);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Records a read served by the near cache, for the eviction policies and the
+	 * statistics to see it once the segment drains it. Takes no lock unless the
+	 * buffer is due for a drain.
+	 *
+	 * @return false if the hit could not be buffered, the read must then reach the segment
+	 */
+	boolean recordNearHit(K key) {
+		if (!nearHits.offer(key)) {
+			tryToCleanUp();
+			return false;
+		}
+		if (nearHits.size() >= DRAIN_THRESHOLD) {
+			tryToCleanUp();
+		}
+		return true;
+	}
+
+	// Apply a read served by the near cache as if it had reached the level holding
+	// the key: count the hit there, refresh the key in its policy and promote it
+	private void replayNearHit(K key) {
+		int level = byKey.get(key);
+		if (level == 0) {
+			// Dropped since, its level is unknown
+			return;
+		}
+		stats.recordHit(level);
+		if (level == 1) {
+			findAt(level, key);
+		} else {
+			promote(key);
+		}
+	}
+
+	// Move a key hit in a lower level back up to L1
+	private void promote(K key) {
+		int level = byKey.get(key);
+		if (level == 0 || level == 1) {
+			// Dropped or already promoted since the hit was recorded
+			return;
+		}
+		if (inclusive) {
+			Migration<K, V> m = migration;
+			if (m != null && m.target == level) {
+				// Settle the key in its level before copying it up
+				migrate(m, key);
+			}
+			// Copy the key up from its highest level, the lower ones keep theirs
+			V value = byIndexLevel[level].getStorageEngine().findByKey(key);
+			if (value != null) {
+				writeThrough(key, value, level - 1);
+			}
+			return;
+		}
+		V value = deleteAt(level, key);
+		byKey.remove(key);
+		if (value != null) {
+			insertAndCascade(key, value);
+		}
+	}
+
+	void put(K key, V value, Expiration expiration) {
+		lock.writeLock().lock();
+		try {
+			maintenance();
+			insertAndCascade(key, value);
+			setExpiration(key, expiration == null ? defaultExpiration : expiration);
+			invalidateNear(key);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	void putAll(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		lock.writeLock().lock();
+		try {
+			maintenance();
+			if (inclusive) {
+				writeThrough(entries);
+			} else {
+				for (Map.Entry<? extends K, ? extends V> entry : entries) {
+					moveToFirstLevel(entry.getKey());
+					stats.recordInsertion(1);
+				}
+				// Write the whole batch into L1 at once and cascade its victims level by level.
+				// A key the batch evicts and then writes again is left out of the victims,
+				// its evicted copy holds the old value
+				cascade(byIndexLevel[1].getStorageEngine().createPairs(entries), 2);
+			}
+			for (Map.Entry<? extends K, ? extends V> entry : entries) {
+				setExpiration(entry.getKey(), defaultExpiration);
+				invalidateNear(entry.getKey());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Restart the expiry of a key just written, the write lock must be held
+	private void setExpiration(K key, Expiration expiration) {
+		TimerWheel.Timer<K> timer = timers.get(key);
+		if (!expiration.isEnabled() || byKey.get(key) == 0) {
+			// Evicted right away by the cascade, or never expires
+			if (timer != null) {
+				wheel.cancel(timer);
+				timers.remove(key);
+			}
+			return;
+		}
+		long now = ticker.read();
+		if (timer == null) {
+			if (timers.isEmpty()) {
+				// The wheel sat idle, skip the time it did not need to track
+				wheel.reset(now);
+			}
+			timer = new TimerWheel.Timer<>(key);
+			timers.put(key, timer);
+		} else {
+			wheel.cancel(timer);
+		}
+		long afterWrite = expiration.getAfterWriteNanos();
+		timer.writeDeadline = afterWrite == 0 ? Long.MAX_VALUE : TimerWheel.saturatedAdd(now, afterWrite);
+		timer.accessDuration = expiration.getAfterAccessNanos();
+		timer.accessTime = now;
+		timer.time = timer.deadline();
+		wheel.schedule(timer);
+	}
+
+	private void insertAndCascade(K key, V value) {
+		if (inclusive) {
+			writeThrough(key, value, levelCount);
+			return;
+		}
+		moveToFirstLevel(key);
+		// Insert data into L1 (cache level 1)
+		StorageEngine<K, V> targetEngine = byIndexLevel[1].getStorageEngine();
+		targetEngine.createPair(key, value);
+		stats.recordInsertion(1);
+		// Cascade the items evicted by L1, if any
+		cascade(targetEngine.getEvictedEntries(), 2);
+	}
+
+	// Point the key map at L1 for a key about to be written there, before the
+	// cascade since the key itself may move on right away. An older copy of the
+	// key in a lower level is dropped, a key lives in a single level.
+	private void moveToFirstLevel(K key) {
+		int previousLevel = byKey.put(key, 1);
+		if (previousLevel > 1) {
+			deleteAt(previousLevel, key);
+		} else if (previousLevel == 1) {
+			// L1 overwrites its own copy, but not one still migrating into it
+			purgeMigrating(key);
+		}
+	}
+
+	// Hand the items evicted by a level down to the lower levels, starting from
+	// the given one, each level taking all the victims of the level above as one batch
+	private void cascade(List<Map.Entry<K, V>> evictedKeys, int fromLevel) {
+		int currentLevel = fromLevel;
+		while (!evictedKeys.isEmpty() && currentLevel <= levelCount) {
+			for (Map.Entry<K, V> evictedKey : evictedKeys) {
+				// Update the new level of the evictedKey from L1 (or lower)
+				byKey.put(evictedKey.getKey(), currentLevel);
+				stats.recordDemotion(currentLevel - 1);
+				stats.recordInsertion(currentLevel);
+			}
+			// Collect the keys L2 (or lower) evicts in turn
+			evictedKeys = byIndexLevel[currentLevel].getStorageEngine().createPairs(evictedKeys);
+			currentLevel++;
+		}
+
+		// If the evicted keys reach beyond the last cache level
+		for (Map.Entry<K, V> evictedKey : evictedKeys) {
+			drop(evictedKey.getKey(), currentLevel - 1);
+		}
+	}
+
+	// Cache Miss: The key is no longer in the cache system
+	private void drop(K key, int level) {
+		byKey.remove(key);
+		TimerWheel.Timer<K> timer = timers.remove(key);
+		if (timer != null) {
+			wheel.cancel(timer);
+		}
+		stats.recordEviction(level);
+		invalidateNear(key);
+	}
+
+	// Make the near copies of a key stale, after its change is in place
+	private void invalidateNear(K key) {
+		if (nearCache != null) {
+			nearCache.invalidate(key);
+		}
+	}
+
+	/**
+	 * Returns true if the key has an expiry, its reads must then reach the segment.
+	 */
+	boolean expires(K key) {
+		lock.readLock().lock();
+		try {
+			return timers.containsKey(key);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void deleteCopies(K key, int fromLevel, int toLevel) {
+		for (int level = fromLevel; level <= toLevel; level++) {
+			deleteAt(level, key);
+		}
+	}
+
+	// Write the key into the levels from the given one up to L1, bottom up so that
+	// each level holds a copy before the one above it does. The key is already in
+	// every level below the given one.
+	private void writeThrough(K key, V value, int fromLevel) {
+		purgeMigrating(key);
+		for (int level = fromLevel; level >= 1; level--) {
+			StorageEngine<K, V> engine = byIndexLevel[level].getStorageEngine();
+			engine.createPair(key, value);
+			stats.recordInsertion(level);
+			boolean rejected = false;
+			for (Map.Entry<K, V> evictedKey : engine.getEvictedEntries()) {
+				invalidate(evictedKey, level);
+				rejected |= key.equals(evictedKey.getKey());
+			}
+			if (rejected) {
+				// The key does not fit this level, it cannot be in the ones above
+				return;
+			}
+		}
+		byKey.put(key, 1);
+	}
+
+	// Batched form of writeThrough for keys written from the last level up
+	private void writeThrough(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Map<K, V> pending = new LinkedHashMap<>();
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			pending.put(entry.getKey(), entry.getValue());
+			purgeMigrating(entry.getKey());
+		}
+		for (int level = levelCount; level >= 1 && !pending.isEmpty(); level--) {
+			List<Map.Entry<K, V>> evictedKeys = byIndexLevel[level].getStorageEngine().createPairs(pending.entrySet());
+			for (int i = 0; i < pending.size(); i++) {
+				stats.recordInsertion(level);
+			}
+			for (Map.Entry<K, V> evictedKey : evictedKeys) {
+				invalidate(evictedKey, level);
+				pending.remove(evictedKey.getKey());
+			}
+		}
+		for (K key : pending.keySet()) {
+			byKey.put(key, 1);
+		}
+	}
+
+	// Account for a key evicted from a level in inclusive mode. The copies of the
+	// levels above are removed to keep them subsets, while the copy of the next
+	// level becomes the highest one, or the key leaves the cache past the last
+	// level. A partial next level gets a copy of the entry first.
+	private void invalidate(Map.Entry<K, V> evictedKey, int level) {
+		K key = evictedKey.getKey();
+		int highestLevel = byKey.get(key);
+		if (highestLevel != 0 && highestLevel < level) {
+			deleteCopies(key, highestLevel, level - 1);
+		}
+		if (level == levelCount) {
+			drop(key, level);
+		} else {
+			byKey.put(key, level + 1);
+			if (highestLevel == level) {
+				stats.recordDemotion(level);
+			}
+			if (partialLevel != 0 && level + 1 >= partialLevel) {
+				StorageEngine<K, V> engine = byIndexLevel[level + 1].getStorageEngine();
+				engine.createPair(key, evictedKey.getValue());
+				stats.recordInsertion(level + 1);
+				for (Map.Entry<K, V> victim : engine.getEvictedEntries()) {
+					invalidate(victim, level + 1);
+				}
+			}
+		}
+	}
+
+	// Drop the copy of a key left to migrate, the key is being written anew
+	private void purgeMigrating(K key) {
+		Migration<K, V> m = migration;
+		if (m != null) {
+			m.source.deleteByKey(key);
+		}
+	}
+
+	private void clearTimers() {
+		for (TimerWheel.Timer<K> timer : timers.values()) {
+			wheel.cancel(timer);
+		}
+		timers.clear();
+	}
+
+	long getWeight(int level) {
+		lock.readLock().lock();
+		try {
+			CacheUnit<K, V> cacheUnit = getCacheUnit(level);
+			return cacheUnit == null ? 0 : cacheUnit.getWeight();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Weakly consistent view of the entries of a level, and of the entries still
+	// migrating into it. The lock is only held to reach the storage, and to check
+	// the deadline of each entry while the segment has keys that expire.
+	Spliterator<Map.Entry<K, V>> spliterator(int level) {
+		lock.readLock().lock();
+		try {
+			if (level > levelCount) {
+				return Spliterators.emptySpliterator();
+			}
+			Spliterator<Map.Entry<K, V>> entries = byIndexLevel[level].getStorageEngine().spliterator();
+			Migration<K, V> m = migration;
+			if (m != null && m.target == level) {
+				entries = Stream.concat(StreamSupport.stream(m.source.spliterator(), false),
+						StreamSupport.stream(entries, false)).spliterator();
+			}
+			return timers.isEmpty() ? entries : new LiveSpliterator(entries);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Whether the key has not expired, like a read would see it but without
+	// extending the deadline of a key that expires after access
+	private boolean isLive(K key) {
+		lock.readLock().lock();
+		try {
+			TimerWheel.Timer<K> timer = timers.get(key);
+			return timer == null || timer.deadline() > ticker.read();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Skips the entries that expired but are still waiting for the maintenance
+	// to remove them from their level
+	private final class LiveSpliterator implements Spliterator<Map.Entry<K, V>> {
+		private final Spliterator<Map.Entry<K, V>> entries;
+
+		LiveSpliterator(Spliterator<Map.Entry<K, V>> entries) {
+			this.entries = entries;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+			boolean[] found = new boolean[1];
+			while (!found[0] && entries.tryAdvance(entry -> {
+				if (isLive(entry.getKey())) {
+					action.accept(entry);
+					found[0] = true;
+				}
+			})) {
+				// Go on past the expired entries
+			}
+			return found[0];
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+			entries.forEachRemaining(entry -> {
+				if (isLive(entry.getKey())) {
+					action.accept(entry);
+				}
+			});
+		}
+
+		@Override
+		public Spliterator<Map.Entry<K, V>> trySplit() {
+			Spliterator<Map.Entry<K, V>> prefix = entries.trySplit();
+			return prefix == null ? null : new LiveSpliterator(prefix);
+		}
+
+		@Override
+		public long estimateSize() {
+			return entries.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return entries.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+		}
+	}
+
+	// Copy the entries of every level in eviction order for a snapshot, the
+	// entries still migrating into a level first since they would be inserted
+	// after the others. Only the read lock is held, readers go on meanwhile.
+	@SuppressWarnings("unchecked")
+	List<CacheSnapshot.Entry<K, V>>[] snapshot() {
+		lock.readLock().lock();
+		try {
+			long now = timers.isEmpty() ? 0 : ticker.read();
+			List<CacheSnapshot.Entry<K, V>>[] byLevel = new List[levelCount + 1];
+			for (int level = 1; level <= levelCount; level++) {
+				List<CacheSnapshot.Entry<K, V>> entries = new ArrayList<>();
+				EntryVisitor<K, V> collector = (key, value, frequency) -> {
+					TimerWheel.Timer<K> timer = timers.get(key);
+					if (timer == null || timer.deadline() > now) {
+						entries.add(new CacheSnapshot.Entry<>(key, value, frequency));
+					}
+				};
+				Migration<K, V> m = migration;
+				if (m != null && m.target == level) {
+					m.source.forEachInEvictionOrder(collector);
+				}
+				byIndexLevel[level].getStorageEngine().forEachInEvictionOrder(collector);
+				byLevel[level] = entries;
+			}
+			return byLevel;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Replay the entries of a snapshot into the levels, from the last one up so
+	// that the directory ends up with the highest copy of each key. Entries the
+	// levels no longer have room for are dropped.
+	void restore(List<CacheSnapshot.Entry<K, V>>[] byLevel) {
+		lock.writeLock().lock();
+		try {
+			List<K> restored = new ArrayList<>();
+			for (int level = Math.min(levelCount, byLevel.length - 1); level >= 1; level--) {
+				List<CacheSnapshot.Entry<K, V>> entries = byLevel[level];
+				if (entries == null) {
+					continue;
+				}
+				StorageEngine<K, V> engine = byIndexLevel[level].getStorageEngine();
+				Set<K> evicted = new HashSet<>();
+				for (CacheSnapshot.Entry<K, V> entry : entries) {
+					engine.restorePair(entry.key, entry.value, entry.frequency);
+					evicted.remove(entry.key);
+					for (Map.Entry<K, V> evictedKey : engine.getEvictedEntries()) {
+						evicted.add(evictedKey.getKey());
+					}
+				}
+				for (CacheSnapshot.Entry<K, V> entry : entries) {
+					if (evicted.contains(entry.key)) {
+						continue;
+					}
+					int previousLevel = byKey.put(entry.key, level);
+					if (previousLevel == 0) {
+						restored.add(entry.key);
+					} else if (!inclusive && previousLevel > level) {
+						// Copied twice while moving up, a key lives in a single level
+						byIndexLevel[previousLevel].getStorageEngine().deleteByKey(entry.key);
+					}
+				}
+			}
+			if (defaultExpiration.isEnabled()) {
+				for (K key : restored) {
+					setExpiration(key, defaultExpiration);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	void clear() {
+		lock.writeLock().lock();
+		try {
+			levelCount = 0;
+			promotions.drainTo(key -> {});
+			nearHits.drainTo(key -> {});
+			byKey.clear();
+			clearTimers();
+			Migration<K, V> m = migration;
+			if (m != null) {
+				migration = null;
+				m.source.close();
+			}
+			partialLevel = 0;
+			for (CacheUnit<K, V> cacheUnit : byIndexLevel) {
+				if (cacheUnit != null) {
+					cacheUnit.getStorageEngine().close();
+				}
+			}
+			Arrays.fill(byIndexLevel, null);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
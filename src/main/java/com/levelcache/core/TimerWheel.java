@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.levelcache.core;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel tracking the expiry of the entries of a {@link Segment}.
+ * <p>
+ * Timers are hashed into the buckets of one of several wheels according to how
+ * far their deadline is: the finest wheel has 64 buckets of about a second, the
+ * next ones buckets of about a minute, an hour and a day, and the last one holds
+ * everything further away. Scheduling and cancelling a timer are O(1). Advancing
+ * the wheel only visits the buckets whose time has passed; their timers either
+ * fire or, when their deadline is still ahead, cascade into a finer wheel, so
+ * each timer is touched a bounded number of times before it fires.
+ * </p>
+ * <p>
+ * Deadlines are observed with the resolution of the finest wheel, a timer fires
+ * up to a second late. Readers check deadlines exactly, so late timers only
+ * delay the reclamation of an entry, never its visibility.
+ * </p>
+ */
+final class TimerWheel<K> {
+
+	private static final int[] BUCKETS = { 64, 64, 32, 4, 1 };
+	private static final long[] SPANS = {
+			1L << 30, // 1.07s
+			1L << 36, // 1.14m
+			1L << 42, // 1.22h
+			1L << 46, // 0.81d
+			1L << 50, // 13.0d
+			1L << 50,
+	};
+	private static final int[] SHIFT = {
+			Long.numberOfTrailingZeros(SPANS[0]),
+			Long.numberOfTrailingZeros(SPANS[1]),
+			Long.numberOfTrailingZeros(SPANS[2]),
+			Long.numberOfTrailingZeros(SPANS[3]),
+			Long.numberOfTrailingZeros(SPANS[4]),
+	};
+
+	/**
+	 * Expiry state of a key, linked into a bucket of the wheel.
+	 */
+	static final class Timer<K> {
+		final K key;
+		// Deadline the timer is bucketed under
+		long time;
+		long writeDeadline;
+		long accessDuration;
+		// Updated by readers holding only the read lock
+		volatile long accessTime;
+		Timer<K> prev, next;
+
+		Timer(K key) {
+			this.key = key;
+		}
+
+		/**
+		 * Returns the time the entry expires at, which moves forward with reads
+		 * when the entry expires after access.
+		 */
+		long deadline() {
+			if (accessDuration == 0) {
+				return writeDeadline;
+			}
+			return Math.min(writeDeadline, saturatedAdd(accessTime, accessDuration));
+		}
+	}
+
+	private final Timer<K>[][] wheel;
+	// Time the wheel was last advanced to
+	private long nanos;
+
+	@SuppressWarnings("unchecked")
+	TimerWheel(long now) {
+		this.wheel = new Timer[BUCKETS.length][];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Timer[BUCKETS[i]];
+			for (int j = 0; j < wheel[i].length; j++) {
+				Timer<K> sentinel = new Timer<>(null);
+				sentinel.prev = sentinel.next = sentinel;
+				wheel[i][j] = sentinel;
+			}
+		}
+		this.nanos = now;
+	}
+
+	static long saturatedAdd(long time, long duration) {
+		long sum = time + duration;
+		return ((time ^ sum) & (duration ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	/**
+	 * Moves the wheel to the time, without firing anything. Only valid while no
+	 * timer is scheduled.
+	 */
+	void reset(long now) {
+		nanos = now;
+	}
+
+	/**
+	 * Links the timer into the bucket matching its {@code time}.
+	 */
+	void schedule(Timer<K> timer) {
+		// Timers already due go to the current bucket, which the next advance visits first
+		long time = Math.max(timer.time, nanos);
+		long duration = time - nanos;
+		if (duration < 0) {
+			duration = Long.MAX_VALUE;
+		}
+		for (int i = 0; i < BUCKETS.length - 1; i++) {
+			if (duration < SPANS[i + 1]) {
+				long ticks = time >>> SHIFT[i];
+				link(wheel[i][(int) (ticks & (BUCKETS[i] - 1))], timer);
+				return;
+			}
+		}
+		link(wheel[BUCKETS.length - 1][0], timer);
+	}
+
+	/**
+	 * Unlinks the timer from its bucket, if scheduled.
+	 */
+	void cancel(Timer<K> timer) {
+		if (timer.next != null) {
+			timer.prev.next = timer.next;
+			timer.next.prev = timer.prev;
+			timer.prev = timer.next = null;
+		}
+	}
+
+	private static <K> void link(Timer<K> sentinel, Timer<K> timer) {
+		timer.prev = sentinel.prev;
+		timer.next = sentinel;
+		sentinel.prev.next = timer;
+		sentinel.prev = timer;
+	}
+
+	/**
+	 * Advances the wheel to the time and hands every timer whose bucketed time
+	 * has passed to the consumer, unlinked. The consumer either drops the timer
+	 * or schedules it again.
+	 */
+	void advance(long now, Consumer<Timer<K>> expired) {
+		long previous = nanos;
+		nanos = now;
+		for (int i = 0; i < BUCKETS.length; i++) {
+			long previousTicks = previous >>> SHIFT[i];
+			long currentTicks = now >>> SHIFT[i];
+			if (currentTicks - previousTicks <= 0) {
+				break;
+			}
+			expire(i, previousTicks, currentTicks - previousTicks, expired);
+		}
+	}
+
+	private void expire(int index, long previousTicks, long delta, Consumer<Timer<K>> expired) {
+		Timer<K>[] buckets = wheel[index];
+		int mask = buckets.length - 1;
+		int steps = (int) Math.min(delta + 1, buckets.length);
+		int start = (int) (previousTicks & mask);
+		for (int step = 0; step < steps; step++) {
+			Timer<K> sentinel = buckets[(start + step) & mask];
+			// Detach the bucket first, timers may be scheduled back into it
+			Timer<K> timer = sentinel.next;
+			sentinel.prev = sentinel.next = sentinel;
+			while (timer != sentinel) {
+				Timer<K> next = timer.next;
+				timer.prev = timer.next = null;
+				if (timer.time > nanos) {
+					// Not due yet, cascade into a finer wheel
+					schedule(timer);
+				} else {
+					expired.accept(timer);
+				}
+				timer = next;
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.levelcache.exception;
+
+import com.levelcache.core.LevelCache;
+
+/**
+ * Exception thrown by a {@link LevelCache} storage when it encounters an error while
+ * attempting to convert a key or value to or from its binary form.
+ */
+public class CacheSerializationException extends RuntimeException {
+
+    private static final long serialVersionUID = 3371954608196152907L;
+
+    /**
+     * Constructs a new CacheSerializationException with the specified detail message.
+     *
+     * @param message the detail message (which is saved for later retrieval by the {@link #getMessage()} method)
+     */
+    public CacheSerializationException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new CacheSerializationException with the specified detail message
+     * and cause.
+     *
+     * @param message the detail message (which is saved for later retrieval by the {@link #getMessage()} method)
+     * @param cause   the cause (which is saved for later retrieval by the {@link #getCause()} method)
+     */
+    public CacheSerializationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Constructs a new CacheSerializationException with the specified cause and a
+     * detail message of (cause==null ? null : cause.toString()) (which typically
+     * contains the class and detail message of cause). This constructor is useful
+     * for exceptions that are little more than wrappers for other throwables (for
+     * example, {@link java.security.PrivilegedActionException}).
+     *
+     * @param cause the cause (which is saved for later retrieval by the {@link #getCause()} method).
+     *              (A null value is permitted, and indicates that the cause is nonexistent or unknown.)
+     */
+    public CacheSerializationException(Throwable cause) {
+        super(cause);
+    }
+
+}
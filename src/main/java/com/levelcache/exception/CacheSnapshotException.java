@@ -0,0 +1,33 @@
+package com.levelcache.exception;
+
+import com.levelcache.core.LevelCache;
+
+/**
+ * Exception thrown when a snapshot of a {@link LevelCache} cannot be written to
+ * or loaded from its file.
+ */
+public class CacheSnapshotException extends Exception {
+
+    private static final long serialVersionUID = 5204117968562293034L;
+
+    /**
+     * Constructs a new CacheSnapshotException with the specified detail message.
+     *
+     * @param message the detail message (which is saved for later retrieval by the {@link #getMessage()} method)
+     */
+    public CacheSnapshotException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new CacheSnapshotException with the specified detail message
+     * and cause.
+     *
+     * @param message the detail message (which is saved for later retrieval by the {@link #getMessage()} method)
+     * @param cause   the cause (which is saved for later retrieval by the {@link #getCause()} method)
+     */
+    public CacheSnapshotException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -7,4 +7,8 @@ public class LevelCreationException extends Exception {
 	public LevelCreationException(String message) {
 		super(message);
 	}
+	
+	public LevelCreationException(String message, Throwable cause) {
+		super(message, cause);
+	}
 }
@@ -14,11 +14,13 @@ public class CacheFactory {
      * Creates a new {@link LevelCache} instance based on the provided configuration.
      *
      * @param config the configuration object used to initialize the cache
+     * @param <K> the type of keys, expected to match {@link CacheConfiguration#getKeyType()}
+     * @param <V> the type of values, expected to match {@link CacheConfiguration#getValueType()}
      * @return a new instance of {@link LevelCache} initialized with the given configuration
      * @throws CacheInitializationException if an error occurs during cache initialization
      */
-    public static LevelCache createCache(CacheConfiguration config) throws CacheInitializationException {
-        return new LevelCacheImpl(config);
+    public static <K, V> LevelCache<K, V> createCache(CacheConfiguration config) throws CacheInitializationException {
+        return new LevelCacheImpl<>(config);
     }
 
     /**
@@ -0,0 +1,27 @@
+package com.levelcache.policy;
+
+public class ArcCacheEntry<K, V> extends CacheEntry<K, V> {
+	// Neighbours within the list holding the entry
+	public ArcCacheEntry<K, V> prev, next;
+	// Whether the entry is in T2, seen at least twice, rather than T1
+	public boolean frequent;
+
+	public ArcCacheEntry(K key, V value) {
+		super(key, value);
+		this.prev = this.next = this;
+	}
+	
+	// Insert the entry right before the node, at the most recent end when the node is a sentinel
+	public void linkBefore(ArcCacheEntry<K, V> node) {
+		prev = node.prev;
+		next = node;
+		node.prev.next = this;
+		node.prev = this;
+	}
+	
+	public void unlink() {
+		prev.next = next;
+		next.prev = prev;
+		prev = next = this;
+	}
+}
@@ -1,10 +1,13 @@
 package com.levelcache.policy;
 
-public abstract class CacheEntry {
-    public String key;
-    public String value;
+public abstract class CacheEntry<K, V> {
+    public K key;
+    // Volatile so engines that serve hits without locking see updates
+    public volatile V value;
+    // Weight of the entry, as computed when the value was written
+    public int weight;
 
-    public CacheEntry(String key, String value) {
+    public CacheEntry(K key, V value) {
         this.key = key;
         this.value = value;
     }
@@ -0,0 +1,74 @@
+package com.levelcache.policy;
+
+/**
+ * A bucket of {@link LfuCacheEntry} nodes sharing the same access frequency.
+ * <p>
+ * Buckets form a doubly-linked list ordered by frequency, and every bucket holds
+ * an intrusive doubly-linked list of its entries ordered from the oldest to the
+ * most recent arrival. Together they allow an LFU policy to find its victim and
+ * bump a frequency in constant time.
+ * </p>
+ */
+public class FrequencyNode<K, V> {
+	public int frequency;
+	// Neighbouring buckets, with lower and higher frequencies
+	public FrequencyNode<K, V> prev, next;
+	// Oldest and most recent entries of this bucket
+	public LfuCacheEntry<K, V> head, tail;
+
+	public FrequencyNode(int frequency) {
+		this.frequency = frequency;
+		this.prev = this.next = this;
+		this.head = this.tail = null;
+	}
+
+	public boolean isEmpty() {
+		return head == null;
+	}
+
+	public void append(LfuCacheEntry<K, V> entry) {
+		entry.parent = this;
+		entry.next = null;
+		entry.prev = tail;
+		if (tail == null) {
+			head = entry;
+		} else {
+			tail.next = entry;
+		}
+		tail = entry;
+	}
+
+	public void remove(LfuCacheEntry<K, V> entry) {
+		if (entry.prev == null) {
+			head = entry.next;
+		} else {
+			entry.prev.next = entry.next;
+		}
+		if (entry.next == null) {
+			tail = entry.prev;
+		} else {
+			entry.next.prev = entry.prev;
+		}
+		entry.prev = entry.next = null;
+		entry.parent = null;
+	}
+
+	/**
+	 * Links the given bucket right after this one.
+	 */
+	public void linkAfter(FrequencyNode<K, V> node) {
+		node.prev = this;
+		node.next = this.next;
+		this.next.prev = node;
+		this.next = node;
+	}
+
+	/**
+	 * Unlinks this bucket from its neighbours.
+	 */
+	public void unlink() {
+		prev.next = next;
+		next.prev = prev;
+		prev = next = this;
+	}
+}
@@ -0,0 +1,118 @@
+package com.levelcache.policy;
+
+/**
+ * Approximate access frequency of keys, used by TinyLFU to decide admissions.
+ * <p>
+ * The sketch is a Count-Min sketch of 4-bit counters packed sixteen to a
+ * {@code long}. An element is counted in four counters picked by independent
+ * hashes, all within the same {@code long} row group, and its estimate is the
+ * smallest of them, so collisions only ever overestimate. Counters saturate at
+ * 15. Once as many increments as ten times the expected number of entries have
+ * been recorded, every counter is halved, so that the sketch forgets old
+ * popularity and follows changes in the workload.
+ * </p>
+ * <p>
+ * The sketch is not thread-safe, its owner must serialize the accesses.
+ * </p>
+ */
+public class FrequencySketch {
+
+	private static final long[] SEEDS = { 
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private long[] table;
+	private int tableMask;
+	private int sampleSize;
+	// Increments recorded since the last halving
+	private int size;
+
+	public FrequencySketch(long maximumSize) {
+		ensureCapacity(maximumSize);
+	}
+
+	/**
+	 * Resizes the sketch for the number of entries, discarding the counts if it
+	 * has to grow.
+	 */
+	public void ensureCapacity(long maximumSize) {
+		int capacity = (int) Math.min(Math.max(maximumSize, 1), MAXIMUM_CAPACITY);
+		if (table != null && table.length >= capacity) {
+			return;
+		}
+		table = new long[ceilingPowerOfTwo(capacity)];
+		tableMask = table.length - 1;
+		sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+		size = 0;
+	}
+
+	private static int ceilingPowerOfTwo(int x) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(Math.max(1, x) - 1));
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of the element, up to 15.
+	 */
+	public int frequency(Object element) {
+		int hash = spread(element.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Records an occurrence of the element, aging the sketch when the sample is full.
+	 */
+	public void increment(Object element) {
+		int hash = spread(element.hashCode());
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++size == sampleSize) {
+			reset();
+		}
+	}
+
+	// Increment the counter at the offset of the row unless it is saturated
+	private boolean incrementAt(int index, int counter) {
+		int offset = counter << 2;
+		long mask = 0xfL << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	// Halve every counter, the sample size shrinks by the halves lost to truncation
+	private void reset() {
+		int odd = 0;
+		for (int i = 0; i < table.length; i++) {
+			odd += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size - (odd >>> 2)) >>> 1;
+	}
+
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return ((int) h) & tableMask;
+	}
+
+	// Spread a weak hash code before deriving the indexes from it
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
@@ -1,14 +1,22 @@
 package com.levelcache.policy;
 
-public class LfuCacheEntry extends CacheEntry {
-	public int frequency;
+public class LfuCacheEntry<K, V> extends CacheEntry<K, V> {
+	// Neighbours within the frequency bucket
+	public LfuCacheEntry<K, V> prev, next;
+	// Bucket of all entries sharing this entry's frequency
+	public FrequencyNode<K, V> parent;
    
-	public LfuCacheEntry(String key, String value) {
+	public LfuCacheEntry(K key, V value) {
         super(key, value);
-        this.frequency = 1;
+        this.prev = this.next = null;
+        this.parent = null;
     }
 	
-	public void setValue(String value) {
+	public void setValue(V value) {
 		this.value = value;
 	}
+	
+	public int getFrequency() {
+		return parent.frequency;
+	}
 }
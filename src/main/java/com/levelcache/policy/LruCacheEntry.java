@@ -1,10 +1,10 @@
 package com.levelcache.policy;
 
 
-public class LruCacheEntry extends CacheEntry {
-	public LruCacheEntry prev, next;
+public class LruCacheEntry<K, V> extends CacheEntry<K, V> {
+	public LruCacheEntry<K, V> prev, next;
     
-	public LruCacheEntry(String key, String value) {
+	public LruCacheEntry(K key, V value) {
         super(key, value);
         this.prev = this.next = null;
     }
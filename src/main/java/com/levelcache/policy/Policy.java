@@ -5,4 +5,16 @@ public enum Policy {
 	LRU,
  
 	LFU,
+	
+	CONCURRENT_LRU,
+	
+	OFF_HEAP,
+	
+	DISK,
+	
+	TINY_LFU,
+	
+	ARC,
+	
+	S3_FIFO,
 }
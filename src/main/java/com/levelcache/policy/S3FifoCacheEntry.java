@@ -0,0 +1,39 @@
+package com.levelcache.policy;
+
+public class S3FifoCacheEntry<K, V> extends CacheEntry<K, V> {
+	public static final int MAX_FREQUENCY = 3;
+
+	// Neighbours within the queue holding the entry
+	public S3FifoCacheEntry<K, V> prev, next;
+	// Whether the entry is in the main queue rather than the small one
+	public boolean main;
+	// Hits since the entry was last looked at by the eviction, bumped without locking
+	public volatile int frequency;
+
+	public S3FifoCacheEntry(K key, V value) {
+		super(key, value);
+		this.prev = this.next = this;
+	}
+	
+	// Record a hit, a lost update between racing readers only undercounts
+	public void touch() {
+		int current = frequency;
+		if (current < MAX_FREQUENCY) {
+			frequency = current + 1;
+		}
+	}
+	
+	// Insert the entry right before the node, at the newest end when the node is a sentinel
+	public void linkBefore(S3FifoCacheEntry<K, V> node) {
+		prev = node.prev;
+		next = node;
+		node.prev.next = this;
+		node.prev = this;
+	}
+	
+	public void unlink() {
+		prev.next = next;
+		next.prev = prev;
+		prev = next = this;
+	}
+}
@@ -0,0 +1,31 @@
+package com.levelcache.policy;
+
+public class TinyLfuCacheEntry<K, V> extends CacheEntry<K, V> {
+	public static final byte WINDOW = 0;
+	public static final byte PROBATION = 1;
+	public static final byte PROTECTED = 2;
+
+	// Neighbours within the queue holding the entry
+	public TinyLfuCacheEntry<K, V> prev, next;
+	// Queue holding the entry, one of WINDOW, PROBATION or PROTECTED
+	public byte queue;
+
+	public TinyLfuCacheEntry(K key, V value) {
+		super(key, value);
+		this.prev = this.next = this;
+	}
+	
+	// Insert the entry right before the node, at the most recent end when the node is a sentinel
+	public void linkBefore(TinyLfuCacheEntry<K, V> node) {
+		prev = node.prev;
+		next = node;
+		node.prev.next = this;
+		node.prev = this;
+	}
+	
+	public void unlink() {
+		prev.next = next;
+		next.prev = prev;
+		prev = next = this;
+	}
+}
@@ -0,0 +1,87 @@
+package com.levelcache.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.levelcache.exception.CacheSerializationException;
+
+/**
+ * Serializer used when none is configured.
+ * <p>
+ * Strings, longs, integers and byte arrays are written in a compact form behind a
+ * one byte tag. Any other {@link Serializable} object falls back to Java
+ * serialization.
+ * </p>
+ */
+public class DefaultSerializer<T> implements Serializer<T> {
+
+	private static final byte STRING = 0;
+	private static final byte LONG = 1;
+	private static final byte INTEGER = 2;
+	private static final byte BYTES = 3;
+	private static final byte OBJECT = 4;
+
+	@Override
+	public byte[] serialize(T object) throws CacheSerializationException {
+		if (object instanceof String) {
+			return tagged(STRING, ((String) object).getBytes(StandardCharsets.UTF_8));
+		}
+		if (object instanceof Long) {
+			return ByteBuffer.allocate(9).put(LONG).putLong((Long) object).array();
+		}
+		if (object instanceof Integer) {
+			return ByteBuffer.allocate(5).put(INTEGER).putInt((Integer) object).array();
+		}
+		if (object instanceof byte[]) {
+			return tagged(BYTES, (byte[]) object);
+		}
+		if (!(object instanceof Serializable)) {
+			throw new CacheSerializationException("Not serializable: " + object.getClass().getName());
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(OBJECT);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(object);
+		} catch (IOException e) {
+			throw new CacheSerializationException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] tagged(byte tag, byte[] payload) {
+		byte[] bytes = new byte[payload.length + 1];
+		bytes[0] = tag;
+		System.arraycopy(payload, 0, bytes, 1, payload.length);
+		return bytes;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T deserialize(byte[] bytes) throws CacheSerializationException {
+		switch (bytes[0]) {
+		case STRING:
+			return (T) new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+		case LONG:
+			return (T) Long.valueOf(ByteBuffer.wrap(bytes, 1, 8).getLong());
+		case INTEGER:
+			return (T) Integer.valueOf(ByteBuffer.wrap(bytes, 1, 4).getInt());
+		case BYTES:
+			return (T) Arrays.copyOfRange(bytes, 1, bytes.length);
+		case OBJECT:
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+				return (T) in.readObject();
+			} catch (IOException | ClassNotFoundException e) {
+				throw new CacheSerializationException(e);
+			}
+		default:
+			throw new CacheSerializationException("Unknown type tag: " + bytes[0]);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.levelcache.serialization;
+
+import com.levelcache.exception.CacheSerializationException;
+
+/**
+ * Converts keys or values to and from their binary form, for the storage
+ * engines that keep data outside of the Java heap.
+ *
+ * @param <T> the type of the converted objects
+ */
+public interface Serializer<T> {
+
+    /**
+     * Encodes the object into bytes.
+     *
+     * @param object the object to encode
+     * @return the binary form of the object
+     * @throws CacheSerializationException if the object cannot be encoded
+     */
+    public byte[] serialize(T object) throws CacheSerializationException;
+
+    /**
+     * Decodes an object previously encoded by {@link #serialize(Object)}.
+     *
+     * @param bytes the binary form of the object
+     * @return the decoded object
+     * @throws CacheSerializationException if the bytes cannot be decoded
+     */
+    public T deserialize(byte[] bytes) throws CacheSerializationException;
+}
@@ -2,24 +2,43 @@ package com.levelcache.service;
 
 import com.levelcache.storage.StorageEngine;
 
-public class CacheUnit {
+public class CacheUnit<K, V> {
 
 	private int id;
 	private int capacity;
+	// Budget of a weighted level, 0 when the capacity counts entries
+	private long maxWeight;
 	private String evictionPolicy;
-	private StorageEngine store;
+	private StorageEngine<K, V> store;
 
-	public CacheUnit(int id, int capacity, String evictionPolicy, StorageEngine store) {
+	private CacheUnit(int id, int capacity, long maxWeight, String evictionPolicy, StorageEngine<K, V> store) {
 		this.id = id;
 		this.capacity = capacity;
+		this.maxWeight = maxWeight;
 		this.evictionPolicy = evictionPolicy;
 		this.store = store;
 	}
 
+	/**
+	 * Creates a level holding at most {@code capacity} entries.
+	 */
+	public static <K, V> CacheUnit<K, V> withCapacity(int id, int capacity, String evictionPolicy, 
+			StorageEngine<K, V> store) {
+		return new CacheUnit<>(id, capacity, 0, evictionPolicy, store);
+	}
+
+	/**
+	 * Creates a level whose entries weigh at most {@code maxWeight} in total.
+	 */
+	public static <K, V> CacheUnit<K, V> withMaxWeight(int id, long maxWeight, String evictionPolicy, 
+			StorageEngine<K, V> store) {
+		return new CacheUnit<>(id, 0, maxWeight, evictionPolicy, store);
+	}
+
 	/**
 	 * @return the store
 	 */
-	public StorageEngine getStorageEngine() {
+	public StorageEngine<K, V> getStorageEngine() {
 		return store;
 	}
 
@@ -37,6 +56,20 @@ public class CacheUnit {
 		return capacity;
 	}
 
+	/**
+	 * @return the maxWeight, 0 unless the level is weighted
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return the current weight of the level
+	 */
+	public long getWeight() {
+		return store.getWeight();
+	}
+
 	/**
 	 * @return the evictionPolicy
 	 */
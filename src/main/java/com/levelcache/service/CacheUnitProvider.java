@@ -1,23 +1,106 @@
 package com.levelcache.service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.levelcache.config.CacheConfiguration;
+import com.levelcache.config.DefaultConfigBuilder;
+import com.levelcache.exception.LevelCreationException;
+import com.levelcache.serialization.DefaultSerializer;
+import com.levelcache.serialization.Serializer;
+import com.levelcache.storage.ArcStorageEngine;
+import com.levelcache.storage.ConcurrentLruStorageEngine;
+import com.levelcache.storage.DiskStorageEngine;
 import com.levelcache.storage.LfuStorageEngine;
 import com.levelcache.storage.LruStorageEngine;
+import com.levelcache.storage.OffHeapStorageEngine;
+import com.levelcache.storage.DefaultWeigher;
+import com.levelcache.storage.S3FifoStorageEngine;
 import com.levelcache.storage.StorageEngine;
+import com.levelcache.storage.TinyLfuStorageEngine;
+import com.levelcache.storage.Weigher;
 
 
 public class CacheUnitProvider {
 	
-	public static CacheUnit createCacheUnit(int id, int capacity, String policy) {
+	public static <K, V> CacheUnit<K, V> createCacheUnit(int id, int capacity, String policy) throws LevelCreationException {
+		return createCacheUnit(id, capacity, policy, DefaultConfigBuilder.getDefaultConfiguration());
+	}
+	
+	public static <K, V> CacheUnit<K, V> createCacheUnit(int id, int capacity, String policy, CacheConfiguration config) 
+			throws LevelCreationException {
 		// Create StorageEngine instance with appropriate policy
-		StorageEngine engine;
+		StorageEngine<K, V> engine;
 		
 		if(policy.equalsIgnoreCase("LFU")) {
-			engine = new LfuStorageEngine(capacity);
+			engine = new LfuStorageEngine<>(capacity);
+		} else if(policy.equalsIgnoreCase("CONCURRENT_LRU")) {
+			engine = new ConcurrentLruStorageEngine<>(capacity);
+		} else if(policy.equalsIgnoreCase("TINY_LFU")) {
+			engine = new TinyLfuStorageEngine<>(capacity);
+		} else if(policy.equalsIgnoreCase("ARC")) {
+			engine = new ArcStorageEngine<>(capacity);
+		} else if(policy.equalsIgnoreCase("S3_FIFO")) {
+			engine = new S3FifoStorageEngine<>(capacity);
+		} else if(policy.equalsIgnoreCase("OFF_HEAP")) {
+			engine = new OffHeapStorageEngine<>(capacity, 
+					CacheUnitProvider.<K>serializer(config.getKeySerializer()), 
+					CacheUnitProvider.<V>serializer(config.getValueSerializer()));
+		} else if(policy.equalsIgnoreCase("DISK")) {
+			engine = new DiskStorageEngine<>(capacity, createLevelDirectory(id, config), 
+					CacheUnitProvider.<K>serializer(config.getKeySerializer()), 
+					CacheUnitProvider.<V>serializer(config.getValueSerializer()));
 		} else {
-			engine = new LruStorageEngine(capacity);
+			engine = new LruStorageEngine<>(capacity);
 		}
 		
-		return new CacheUnit(id, capacity, policy, engine);
+		return CacheUnit.withCapacity(id, capacity, policy, engine);
+	}
+	
+	public static <K, V> CacheUnit<K, V> createWeightedCacheUnit(int id, long maxWeight, String policy, 
+			CacheConfiguration config) throws LevelCreationException {
+		// Only the heap engines can weigh their entries
+		Weigher<? super K, ? super V> weigher = CacheUnitProvider.<K, V>weigher(config.getWeigher());
+		StorageEngine<K, V> engine;
+		
+		if(policy.equalsIgnoreCase("LFU")) {
+			engine = new LfuStorageEngine<>(maxWeight, weigher);
+		} else if(policy.equalsIgnoreCase("CONCURRENT_LRU")) {
+			engine = new ConcurrentLruStorageEngine<>(maxWeight, weigher);
+		} else if(policy.equalsIgnoreCase("TINY_LFU")) {
+			engine = new TinyLfuStorageEngine<>(maxWeight, weigher);
+		} else if(policy.equalsIgnoreCase("S3_FIFO")) {
+			engine = new S3FifoStorageEngine<>(maxWeight, weigher);
+		} else if(policy.equalsIgnoreCase("OFF_HEAP") || policy.equalsIgnoreCase("DISK") 
+				|| policy.equalsIgnoreCase("ARC")) {
+			throw new LevelCreationException("Weighted capacity is not supported by policy: " + policy);
+		} else {
+			engine = new LruStorageEngine<>(maxWeight, weigher);
+		}
+		
+		return CacheUnit.withMaxWeight(id, maxWeight, policy, engine);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <K, V> Weigher<? super K, ? super V> weigher(Weigher<?, ?> configured) {
+		return configured == null ? new DefaultWeigher() : (Weigher<K, V>) configured;
+	}
+	
+	private static Path createLevelDirectory(int id, CacheConfiguration config) throws LevelCreationException {
+		String base = config.getDiskStoragePath() != null ? config.getDiskStoragePath() : System.getProperty("java.io.tmpdir");
+		try {
+			Path baseDirectory = Files.createDirectories(Paths.get(base));
+			return Files.createTempDirectory(baseDirectory, "levelcache-L" + id + "-");
+		} catch (IOException e) {
+			throw new LevelCreationException("Cannot create storage directory for level " + id + " under " + base, e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	public static <T> Serializer<T> serializer(Serializer<?> configured) {
+		return configured == null ? new DefaultSerializer<>() : (Serializer<T>) configured;
 	}
 
 }
@@ -0,0 +1,64 @@
+package com.levelcache.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Candidate level configuration of a simulation, written as a comma separated
+ * list of {@code POLICY:capacity} levels from L1 down, e.g. {@code LRU:1000,LFU:10000}.
+ */
+public final class LevelLayout {
+
+    private final String name;
+    private final List<String> policies;
+    private final List<Integer> capacities;
+
+    private LevelLayout(String name, List<String> policies, List<Integer> capacities) {
+        this.name = name;
+        this.policies = Collections.unmodifiableList(policies);
+        this.capacities = Collections.unmodifiableList(capacities);
+    }
+
+    /**
+     * Parses a layout.
+     *
+     * @param spec the levels, e.g. {@code LRU:1000,LFU:10000}
+     * @return the layout
+     * @throws IllegalArgumentException if the spec is malformed
+     */
+    public static LevelLayout parse(String spec) {
+        List<String> policies = new ArrayList<>();
+        List<Integer> capacities = new ArrayList<>();
+        for (String level : spec.split(",")) {
+            String[] parts = level.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid level: " + level + ", expected POLICY:capacity");
+            }
+            policies.add(parts[0].trim().toUpperCase());
+            capacities.add(Integer.parseInt(parts[1].trim()));
+        }
+        return new LevelLayout(spec, policies, capacities);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLevelCount() {
+        return policies.size();
+    }
+
+    public String getPolicy(int level) {
+        return policies.get(level - 1);
+    }
+
+    public int getCapacity(int level) {
+        return capacities.get(level - 1);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,102 @@
+package com.levelcache.simulator;
+
+/**
+ * Outcome of replaying a trace against one {@link LevelLayout}.
+ */
+public final class SimulationResult {
+
+    private final LevelLayout layout;
+    private final long accesses;
+    // Indexed by level, slot 0 unused
+    private final long[] hits;
+    private final long[] demotions;
+    private final long misses;
+    private final long evictions;
+    private final long elapsedNanos;
+
+    SimulationResult(LevelLayout layout, long accesses, long[] hits, long[] demotions, long misses,
+            long evictions, long elapsedNanos) {
+        this.layout = layout;
+        this.accesses = accesses;
+        this.hits = hits;
+        this.demotions = demotions;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public LevelLayout getLayout() {
+        return layout;
+    }
+
+    public long getAccesses() {
+        return accesses;
+    }
+
+    public long getHits(int level) {
+        return hits[level];
+    }
+
+    /**
+     * Share of the accesses served by the level.
+     */
+    public double getHitRatio(int level) {
+        return accesses == 0 ? 0 : (double) hits[level] / accesses;
+    }
+
+    /**
+     * Share of the accesses served by no level.
+     */
+    public double getMissRatio() {
+        return accesses == 0 ? 0 : (double) misses / accesses;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Number of entries evicted from the level down to the next one.
+     */
+    public long getDemotions(int level) {
+        return demotions[level];
+    }
+
+    /**
+     * Number of entries moved down a level, over all the levels.
+     */
+    public long getTotalDemotions() {
+        long total = 0;
+        for (long count : demotions) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Number of entries evicted from the last level.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Accesses replayed per second, misses included with their write.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : accesses * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(layout.getName()).append('\n');
+        for (int level = 1; level < hits.length; level++) {
+            report.append(String.format("  L%d %-14s hit ratio %6.2f%%  demotions %d%n", level,
+                    layout.getPolicy(level) + ":" + layout.getCapacity(level), 100 * getHitRatio(level),
+                    demotions[level]));
+        }
+        report.append(String.format("  miss ratio %6.2f%%  evictions %d  throughput %.0f ops/s", 100 * getMissRatio(),
+                evictions, getThroughput()));
+        return report.toString();
+    }
+}
@@ -0,0 +1,178 @@
+package com.levelcache.simulator;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.levelcache.config.CacheConfiguration;
+import com.levelcache.config.ConfigurationBuilder;
+import com.levelcache.core.LevelCache;
+import com.levelcache.factory.CacheFactory;
+import com.levelcache.stats.StatsCounter;
+
+/**
+ * Replays access traces against candidate level layouts to compare their hit
+ * ratios before sizing a real cache.
+ * <p>
+ * Every access is a {@code get}, followed by a {@code put} of the key on a miss,
+ * like a read-through cache in front of the system of record. Each layout runs
+ * on its own single-segment cache, so results are deterministic, and the layouts
+ * are replayed in parallel over the same in-memory trace.
+ * </p>
+ * <pre>
+ * java -cp levelcache.jar com.levelcache.simulator.Simulator trace.arc --format arc \
+ *     --layout LRU:1000,LRU:10000 --layout LRU:1000,LFU:5000,LRU:20000
+ * </pre>
+ */
+public class Simulator {
+
+    /**
+     * Counts the events of a cache driven by a single thread.
+     */
+    private static final class LevelCounter implements StatsCounter {
+        final long[] hits;
+        final long[] demotions;
+        long misses;
+        long evictions;
+
+        LevelCounter(int levels) {
+            this.hits = new long[levels + 1];
+            this.demotions = new long[levels + 1];
+        }
+
+        @Override
+        public void recordHit(int level) {
+            hits[level]++;
+        }
+
+        @Override
+        public void recordMiss() {
+            misses++;
+        }
+
+        @Override
+        public void recordDemotion(int level) {
+            demotions[level]++;
+        }
+
+        @Override
+        public void recordInsertion(int level) {
+        }
+
+        @Override
+        public void recordEviction(int level) {
+            evictions++;
+        }
+
+        @Override
+        public void recordExpiration(int level) {
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadTime) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadTime) {
+        }
+    }
+
+    /**
+     * Replays the trace against one layout.
+     *
+     * @param trace the accesses to replay
+     * @param layout the levels of the simulated cache
+     * @return the hit ratios, demotions and throughput of the layout
+     * @throws Exception if the cache cannot be built with the layout
+     */
+    public static SimulationResult simulate(Trace trace, LevelLayout layout) throws Exception {
+        return simulate(trace, layout, 0);
+    }
+
+    // The index keeps the cache names apart when the same layout is simulated twice
+    private static SimulationResult simulate(Trace trace, LevelLayout layout, int index) throws Exception {
+        LevelCounter counter = new LevelCounter(layout.getLevelCount());
+        CacheConfiguration config = new ConfigurationBuilder()
+                .setCacheName("simulation-" + index + "-" + layout.getName())
+                .setConcurrencyLevel(1)
+                .setMaxCacheLevels(layout.getLevelCount())
+                .setStatsCounter(counter)
+                .build();
+        try (LevelCache<Object, Object> cache = CacheFactory.createCache(config)) {
+            for (int level = 1; level <= layout.getLevelCount(); level++) {
+                cache.addLevel(layout.getCapacity(level), layout.getPolicy(level));
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < trace.size(); i++) {
+                Object key = trace.get(i);
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            return new SimulationResult(layout, trace.size(), counter.hits, counter.demotions, counter.misses,
+                    counter.evictions, elapsed);
+        }
+    }
+
+    /**
+     * Replays the trace against every layout, in parallel.
+     *
+     * @param trace the accesses to replay
+     * @param layouts the candidate layouts
+     * @return the results, in the order of the layouts
+     * @throws Exception if a simulation fails
+     */
+    public static List<SimulationResult> simulateAll(Trace trace, List<LevelLayout> layouts) throws Exception {
+        int threads = Math.max(1, Math.min(layouts.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SimulationResult>> futures = new ArrayList<>();
+            for (int i = 0; i < layouts.size(); i++) {
+                LevelLayout layout = layouts.get(i);
+                int index = i;
+                futures.add(executor.submit(() -> simulate(trace, layout, index)));
+            }
+            List<SimulationResult> results = new ArrayList<>();
+            for (Future<SimulationResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String file = null;
+        TraceFormat format = TraceFormat.PLAIN;
+        List<LevelLayout> layouts = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--format".equals(args[i]) && i + 1 < args.length) {
+                format = TraceFormat.valueOf(args[++i].toUpperCase());
+            } else if ("--layout".equals(args[i]) && i + 1 < args.length) {
+                layouts.add(LevelLayout.parse(args[++i]));
+            } else {
+                file = args[i];
+            }
+        }
+        if (file == null || layouts.isEmpty()) {
+            System.err.println("Usage: Simulator <trace file> [--format plain|arc|lirs] --layout POLICY:capacity,... [--layout ...]");
+            System.exit(1);
+        }
+
+        Trace trace = Trace.load(Paths.get(file), format);
+        System.out.println("Replaying " + trace.size() + " accesses against " + layouts.size() + " layouts");
+        for (SimulationResult result : simulateAll(trace, layouts)) {
+            System.out.println(result);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.levelcache.simulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sequence of keys accessed by a workload, held in memory so several
+ * configurations can replay it at the same time.
+ */
+public final class Trace {
+
+    private final Object[] keys;
+
+    private Trace(Object[] keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Reads a trace file.
+     *
+     * @param file the trace file
+     * @param format the line format of the file
+     * @return the accesses of the trace, in order
+     * @throws IOException if the file cannot be read
+     */
+    public static Trace load(Path file, TraceFormat format) throws IOException {
+        List<Object> keys = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    format.parse(line, keys);
+                }
+            }
+        }
+        return new Trace(keys.toArray());
+    }
+
+    /**
+     * Builds a trace from keys already in memory.
+     */
+    public static Trace of(Object... keys) {
+        return new Trace(Arrays.copyOf(keys, keys.length));
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    Object get(int index) {
+        return keys[index];
+    }
+}
@@ -0,0 +1,60 @@
+package com.levelcache.simulator;
+
+import java.util.List;
+
+/**
+ * Line formats of the access traces the {@link Simulator} can replay.
+ */
+public enum TraceFormat {
+
+    /**
+     * One key per line, the first whitespace separated token of the line.
+     */
+    PLAIN {
+        @Override
+        void parse(String line, List<Object> keys) {
+            String[] tokens = line.trim().split("\\s+");
+            if (!tokens[0].isEmpty()) {
+                keys.add(tokens[0]);
+            }
+        }
+    },
+
+    /**
+     * ARC traces: {@code <start block> <block count> <ignored> <request number>},
+     * each line accessing the blocks of the range in order.
+     */
+    ARC {
+        @Override
+        void parse(String line, List<Object> keys) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens.length < 2) {
+                return;
+            }
+            long start = Long.parseLong(tokens[0]);
+            int count = Integer.parseInt(tokens[1]);
+            for (int i = 0; i < count; i++) {
+                keys.add(start + i);
+            }
+        }
+    },
+
+    /**
+     * LIRS traces: one block number per line, other lines such as {@code *}
+     * separators are skipped.
+     */
+    LIRS {
+        @Override
+        void parse(String line, List<Object> keys) {
+            String token = line.trim();
+            if (!token.isEmpty() && Character.isDigit(token.charAt(0))) {
+                keys.add(Long.parseLong(token));
+            }
+        }
+    };
+
+    /**
+     * Appends the keys accessed by one line of the trace.
+     */
+    abstract void parse(String line, List<Object> keys);
+}
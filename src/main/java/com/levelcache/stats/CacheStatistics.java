@@ -0,0 +1,148 @@
+package com.levelcache.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntToLongFunction;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link CacheStatisticsMXBean} reading the counts of a {@link ConcurrentStatsCounter}.
+ * Every attribute read takes a fresh snapshot.
+ */
+public final class CacheStatistics implements CacheStatisticsMXBean {
+
+    private final ConcurrentStatsCounter counter;
+
+    private CacheStatistics(ConcurrentStatsCounter counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * Returns the JMX name of the statistics of a cache.
+     */
+    public static ObjectName objectName(String cacheName) throws JMException {
+        return new ObjectName("com.levelcache:type=CacheStatistics,name=" + ObjectName.quote(cacheName));
+    }
+
+    /**
+     * Publishes the counts on the platform MBean server under the name of the
+     * cache. The name stays taken until {@link #unregister(String)}.
+     *
+     * @param cacheName the name of the cache
+     * @param counter the counter of the cache
+     * @throws InstanceAlreadyExistsException if a live cache already publishes under the name
+     * @throws JMException if the bean cannot be registered
+     */
+    public static void register(String cacheName, ConcurrentStatsCounter counter) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new CacheStatistics(counter), objectName(cacheName));
+    }
+
+    /**
+     * Removes the statistics of a cache from the platform MBean server, if published.
+     */
+    public static void unregister(String cacheName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName(cacheName));
+        } catch (InstanceNotFoundException e) {
+            // Not published
+        }
+    }
+
+    private static long[] perLevel(CacheStats stats, IntToLongFunction count) {
+        long[] counts = new long[stats.getLevelCount()];
+        for (int level = 1; level <= counts.length; level++) {
+            counts[level - 1] = count.applyAsLong(level);
+        }
+        return counts;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return counter.snapshot().getRequestCount();
+    }
+
+    @Override
+    public long getHitCount() {
+        return counter.snapshot().getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return counter.snapshot().getMissCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return counter.snapshot().getHitRate();
+    }
+
+    @Override
+    public double getMissRate() {
+        return counter.snapshot().getMissRate();
+    }
+
+    @Override
+    public long[] getLevelHitCounts() {
+        CacheStats stats = counter.snapshot();
+        return perLevel(stats, stats::getHitCount);
+    }
+
+    @Override
+    public long[] getLevelInsertionCounts() {
+        CacheStats stats = counter.snapshot();
+        return perLevel(stats, stats::getInsertionCount);
+    }
+
+    @Override
+    public long[] getLevelDemotionCounts() {
+        CacheStats stats = counter.snapshot();
+        return perLevel(stats, stats::getDemotionCount);
+    }
+
+    @Override
+    public long[] getLevelEvictionCounts() {
+        CacheStats stats = counter.snapshot();
+        return perLevel(stats, stats::getEvictionCount);
+    }
+
+    @Override
+    public long getDropCount() {
+        return counter.snapshot().getDropCount();
+    }
+
+    @Override
+    public long[] getLevelExpirationCounts() {
+        CacheStats stats = counter.snapshot();
+        return perLevel(stats, stats::getExpirationCount);
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return counter.snapshot().getLoadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return counter.snapshot().getLoadFailureCount();
+    }
+
+    @Override
+    public long getTotalLoadTime() {
+        return counter.snapshot().getTotalLoadTime();
+    }
+
+    @Override
+    public double getAverageLoadPenalty() {
+        return counter.snapshot().getAverageLoadPenalty();
+    }
+
+    @Override
+    public void resetStatistics() {
+        counter.reset();
+    }
+}
@@ -0,0 +1,47 @@
+package com.levelcache.stats;
+
+/**
+ * JMX view of the statistics of a {@link com.levelcache.core.LevelCache},
+ * registered as {@code com.levelcache:type=CacheStatistics,name=<cache name>}
+ * when statistics are enabled in its configuration.
+ * <p>
+ * Per-level attributes are arrays whose first element is L1.
+ * </p>
+ */
+public interface CacheStatisticsMXBean {
+
+    public long getRequestCount();
+
+    public long getHitCount();
+
+    public long getMissCount();
+
+    public double getHitRate();
+
+    public double getMissRate();
+
+    public long[] getLevelHitCounts();
+
+    public long[] getLevelInsertionCounts();
+
+    public long[] getLevelDemotionCounts();
+
+    public long[] getLevelEvictionCounts();
+
+    public long getDropCount();
+
+    public long[] getLevelExpirationCounts();
+
+    public long getLoadSuccessCount();
+
+    public long getLoadFailureCount();
+
+    public long getTotalLoadTime();
+
+    public double getAverageLoadPenalty();
+
+    /**
+     * Resets every count to zero.
+     */
+    public void resetStatistics();
+}
@@ -0,0 +1,208 @@
+package com.levelcache.stats;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the statistics of a {@link com.levelcache.core.LevelCache}.
+ * <p>
+ * Per-level counts are looked up by level id, starting at 1 for L1. Levels that
+ * never recorded an event, or ids past {@link #getLevelCount()}, report zero.
+ * </p>
+ */
+public final class CacheStats {
+
+    private static final CacheStats EMPTY = new CacheStats(new long[1], 0, new long[1], new long[1], new long[1], new long[1],
+            0, 0, 0);
+
+    // Indexed by level, slot 0 unused
+    private final long[] hits;
+    private final long[] insertions;
+    private final long[] demotions;
+    private final long[] evictions;
+    private final long[] expirations;
+    private final long misses;
+    private final long loadSuccesses;
+    private final long loadFailures;
+    private final long totalLoadTime;
+
+    CacheStats(long[] hits, long misses, long[] insertions, long[] demotions, long[] evictions, long[] expirations,
+            long loadSuccesses, long loadFailures, long totalLoadTime) {
+        this.hits = hits;
+        this.misses = misses;
+        this.insertions = insertions;
+        this.demotions = demotions;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.loadSuccesses = loadSuccesses;
+        this.loadFailures = loadFailures;
+        this.totalLoadTime = totalLoadTime;
+    }
+
+    /**
+     * Returns a snapshot with every count at zero.
+     */
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    private static long at(long[] counts, int level) {
+        return level > 0 && level < counts.length ? counts[level] : 0;
+    }
+
+    /**
+     * Returns the highest level id with recorded events.
+     */
+    public int getLevelCount() {
+        return hits.length - 1;
+    }
+
+    /**
+     * Returns the number of reads, hits and misses.
+     */
+    public long getRequestCount() {
+        return getHitCount() + misses;
+    }
+
+    /**
+     * Returns the number of reads served by any level.
+     */
+    public long getHitCount() {
+        long total = 0;
+        for (long count : hits) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of reads served by the level.
+     */
+    public long getHitCount(int level) {
+        return at(hits, level);
+    }
+
+    /**
+     * Returns the number of reads served by no level.
+     */
+    public long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of the reads served by any level, 1 when there was no read.
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) getHitCount() / requests;
+    }
+
+    /**
+     * Returns the share of the reads served by the level.
+     */
+    public double getHitRate(int level) {
+        long requests = getRequestCount();
+        return requests == 0 ? 0.0 : (double) getHitCount(level) / requests;
+    }
+
+    /**
+     * Returns the share of the reads served by no level, 0 when there was no read.
+     */
+    public double getMissRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 0.0 : (double) misses / requests;
+    }
+
+    /**
+     * Returns the number of entries written into the level, by puts for L1 and
+     * by demotions from the level above otherwise.
+     */
+    public long getInsertionCount(int level) {
+        return at(insertions, level);
+    }
+
+    /**
+     * Returns the number of entries evicted from the level down to the next one.
+     */
+    public long getDemotionCount(int level) {
+        return at(demotions, level);
+    }
+
+    /**
+     * Returns the number of entries evicted from the level, moved down or
+     * dropped from the cache.
+     */
+    public long getEvictionCount(int level) {
+        return at(demotions, level) + at(evictions, level);
+    }
+
+    /**
+     * Returns the number of entries dropped off the last level, leaving the cache.
+     */
+    public long getDropCount() {
+        long total = 0;
+        for (long count : evictions) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of entries removed from the level because they expired.
+     */
+    public long getExpirationCount(int level) {
+        return at(expirations, level);
+    }
+
+    /**
+     * Returns the number of entries removed from any level because they expired.
+     */
+    public long getExpirationCount() {
+        long total = 0;
+        for (long count : expirations) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of values successfully loaded on a miss.
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccesses;
+    }
+
+    /**
+     * Returns the number of loads that failed or found no value.
+     */
+    public long getLoadFailureCount() {
+        return loadFailures;
+    }
+
+    /**
+     * Returns the time spent loading values, in nanoseconds.
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Returns the average time spent loading a value, in nanoseconds.
+     */
+    public double getAverageLoadPenalty() {
+        long loads = loadSuccesses + loadFailures;
+        return loads == 0 ? 0.0 : (double) totalLoadTime / loads;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + Arrays.toString(Arrays.copyOfRange(hits, 1, hits.length))
+                + ", misses=" + misses
+                + ", insertions=" + Arrays.toString(Arrays.copyOfRange(insertions, 1, insertions.length))
+                + ", demotions=" + Arrays.toString(Arrays.copyOfRange(demotions, 1, demotions.length))
+                + ", drops=" + getDropCount()
+                + ", expirations=" + Arrays.toString(Arrays.copyOfRange(expirations, 1, expirations.length))
+                + ", loadSuccesses=" + loadSuccesses
+                + ", loadFailures=" + loadFailures
+                + ", totalLoadTime=" + totalLoadTime + "}";
+    }
+}
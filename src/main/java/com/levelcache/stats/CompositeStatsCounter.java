@@ -0,0 +1,63 @@
+package com.levelcache.stats;
+
+/**
+ * {@link StatsCounter} forwarding every event to two counters.
+ */
+final class CompositeStatsCounter implements StatsCounter {
+
+    private final StatsCounter first;
+    private final StatsCounter second;
+
+    CompositeStatsCounter(StatsCounter first, StatsCounter second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void recordHit(int level) {
+        first.recordHit(level);
+        second.recordHit(level);
+    }
+
+    @Override
+    public void recordMiss() {
+        first.recordMiss();
+        second.recordMiss();
+    }
+
+    @Override
+    public void recordInsertion(int level) {
+        first.recordInsertion(level);
+        second.recordInsertion(level);
+    }
+
+    @Override
+    public void recordDemotion(int level) {
+        first.recordDemotion(level);
+        second.recordDemotion(level);
+    }
+
+    @Override
+    public void recordEviction(int level) {
+        first.recordEviction(level);
+        second.recordEviction(level);
+    }
+
+    @Override
+    public void recordExpiration(int level) {
+        first.recordExpiration(level);
+        second.recordExpiration(level);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        first.recordLoadSuccess(loadTime);
+        second.recordLoadSuccess(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        first.recordLoadFailure(loadTime);
+        second.recordLoadFailure(loadTime);
+    }
+}
@@ -0,0 +1,148 @@
+package com.levelcache.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe {@link StatsCounter} backing {@link com.levelcache.core.LevelCache#stats()}.
+ * <p>
+ * Every count is a {@link LongAdder}, which spreads concurrent increments over
+ * per-thread cells instead of contending on a single word, so recording stays
+ * cheap on the hot path. The counters of a level are created the first time
+ * the level records an event.
+ * </p>
+ */
+public final class ConcurrentStatsCounter implements StatsCounter {
+
+    /**
+     * Counters of a single level.
+     */
+    private static final class LevelCounters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder insertions = new LongAdder();
+        final LongAdder demotions = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder expirations = new LongAdder();
+    }
+
+    // Indexed by level, slot 0 unused, only ever replaced by a larger copy
+    private volatile LevelCounters[] levels;
+    private final LongAdder misses;
+    private final LongAdder loadSuccesses;
+    private final LongAdder loadFailures;
+    private final LongAdder totalLoadTime;
+
+    public ConcurrentStatsCounter() {
+        this.levels = new LevelCounters[1];
+        this.misses = new LongAdder();
+        this.loadSuccesses = new LongAdder();
+        this.loadFailures = new LongAdder();
+        this.totalLoadTime = new LongAdder();
+    }
+
+    private LevelCounters level(int level) {
+        LevelCounters[] current = levels;
+        if (level < current.length && current[level] != null) {
+            return current[level];
+        }
+        return addLevel(level);
+    }
+
+    private synchronized LevelCounters addLevel(int level) {
+        LevelCounters[] current = levels;
+        if (level >= current.length) {
+            LevelCounters[] grown = new LevelCounters[level + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+        }
+        if (current[level] == null) {
+            current[level] = new LevelCounters();
+        }
+        levels = current;
+        return current[level];
+    }
+
+    @Override
+    public void recordHit(int level) {
+        level(level).hits.increment();
+    }
+
+    @Override
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    @Override
+    public void recordInsertion(int level) {
+        level(level).insertions.increment();
+    }
+
+    @Override
+    public void recordDemotion(int level) {
+        level(level).demotions.increment();
+    }
+
+    @Override
+    public void recordEviction(int level) {
+        level(level).evictions.increment();
+    }
+
+    @Override
+    public void recordExpiration(int level) {
+        level(level).expirations.increment();
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccesses.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        loadFailures.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * Returns a snapshot of the counts. Counts recorded while the snapshot is
+     * taken may or may not be included.
+     */
+    public CacheStats snapshot() {
+        LevelCounters[] current = levels;
+        long[] hits = new long[current.length];
+        long[] insertions = new long[current.length];
+        long[] demotions = new long[current.length];
+        long[] evictions = new long[current.length];
+        long[] expirations = new long[current.length];
+        for (int level = 1; level < current.length; level++) {
+            if (current[level] != null) {
+                hits[level] = current[level].hits.sum();
+                insertions[level] = current[level].insertions.sum();
+                demotions[level] = current[level].demotions.sum();
+                evictions[level] = current[level].evictions.sum();
+                expirations[level] = current[level].expirations.sum();
+            }
+        }
+        return new CacheStats(hits, misses.sum(), insertions, demotions, evictions, expirations, loadSuccesses.sum(),
+                loadFailures.sum(), totalLoadTime.sum());
+    }
+
+    /**
+     * Resets every count to zero.
+     */
+    public void reset() {
+        for (LevelCounters counters : levels) {
+            if (counters != null) {
+                counters.hits.reset();
+                counters.insertions.reset();
+                counters.demotions.reset();
+                counters.evictions.reset();
+                counters.expirations.reset();
+            }
+        }
+        misses.reset();
+        loadSuccesses.reset();
+        loadFailures.reset();
+        totalLoadTime.reset();
+    }
+}
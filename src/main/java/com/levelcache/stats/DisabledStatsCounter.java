@@ -0,0 +1,40 @@
+package com.levelcache.stats;
+
+/**
+ * {@link StatsCounter} used when statistics are not collected.
+ */
+enum DisabledStatsCounter implements StatsCounter {
+    INSTANCE;
+
+    @Override
+    public void recordHit(int level) {
+    }
+
+    @Override
+    public void recordMiss() {
+    }
+
+    @Override
+    public void recordInsertion(int level) {
+    }
+
+    @Override
+    public void recordDemotion(int level) {
+    }
+
+    @Override
+    public void recordEviction(int level) {
+    }
+
+    @Override
+    public void recordExpiration(int level) {
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+    }
+}
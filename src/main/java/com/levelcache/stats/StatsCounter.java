@@ -0,0 +1,84 @@
+package com.levelcache.stats;
+
+/**
+ * Receives the events of a {@link com.levelcache.core.LevelCache} as they happen.
+ * <p>
+ * Implementations are called on the hot path, from any thread and sometimes
+ * while the cache holds a lock, so they must be thread-safe and cheap.
+ * </p>
+ */
+public interface StatsCounter {
+
+    /**
+     * Records a read served by a level.
+     *
+     * @param level the level holding the key
+     */
+    public void recordHit(int level);
+
+    /**
+     * Records a read of a key held by no level.
+     */
+    public void recordMiss();
+
+    /**
+     * Records an entry written into a level, by a put or by a demotion from
+     * the level above.
+     *
+     * @param level the level written to
+     */
+    public void recordInsertion(int level);
+
+    /**
+     * Records an entry evicted from a level and moved down to the next one.
+     *
+     * @param level the level the entry was evicted from
+     */
+    public void recordDemotion(int level);
+
+    /**
+     * Records an entry evicted from the last level, which leaves the cache.
+     *
+     * @param level the last level, the entry was evicted from
+     */
+    public void recordEviction(int level);
+
+    /**
+     * Records an entry removed from a level because it expired.
+     *
+     * @param level the level the entry expired in
+     */
+    public void recordExpiration(int level);
+
+    /**
+     * Records a value successfully loaded on a miss.
+     *
+     * @param loadTime the time spent loading, in nanoseconds
+     */
+    public void recordLoadSuccess(long loadTime);
+
+    /**
+     * Records a load that failed or found no value.
+     *
+     * @param loadTime the time spent loading, in nanoseconds
+     */
+    public void recordLoadFailure(long loadTime);
+
+    /**
+     * Returns a counter ignoring every event.
+     */
+    public static StatsCounter disabled() {
+        return DisabledStatsCounter.INSTANCE;
+    }
+
+    /**
+     * Returns a counter forwarding every event to both counters, or the only
+     * one of them that is not null.
+     */
+    public static StatsCounter combine(StatsCounter first, StatsCounter second) {
+        if (first == null) {
+            return second == null ? disabled() : second;
+        }
+        return second == null ? first : new CompositeStatsCounter(first, second);
+    }
+}
@@ -1,36 +1,182 @@
 package com.levelcache.storage;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 import com.levelcache.policy.CacheEntry;
 
-public abstract class AbstractStorageEngine<T extends CacheEntry> implements StorageEngine {
+public abstract class AbstractStorageEngine<K, V, T extends CacheEntry<K, V>> implements StorageEngine<K, V> {
+
+	// Initial sizing of the map when the capacity is a weight
+	private static final int WEIGHTED_INITIAL_CAPACITY = 16;
 
 	protected int size;
 	protected int capacity;
-	protected Map.Entry<String, String> evictedPair;
-	// Allow subclasses to define specific Entry types
-	protected Map<String, T> cacheMap;
+	// Budget of the engine, entries weigh 1 when no weigher is set so it is the capacity
+	protected long maxWeight;
+	protected long weight;
+	protected Weigher<? super K, ? super V> weigher;
+	// Entries evicted by the last write
+	protected List<Map.Entry<K, V>> evictedPairs;
+	// Allow subclasses to define specific Entry types, concurrent so that scans
+	// can traverse it without the monitor
+	protected ConcurrentMap<K, T> cacheMap;
 
 	protected AbstractStorageEngine(int capacity) {
+		this(capacity, capacity, null);
+	}
+
+	protected AbstractStorageEngine(long maxWeight, Weigher<? super K, ? super V> weigher) {
+		this(WEIGHTED_INITIAL_CAPACITY, maxWeight, weigher);
+	}
+
+	private AbstractStorageEngine(int capacity, long maxWeight, Weigher<? super K, ? super V> weigher) {
 		this.size = 0;
 		this.capacity = capacity;
+		this.maxWeight = maxWeight;
+		this.weight = 0;
+		this.weigher = weigher;
+		this.evictedPairs = Collections.emptyList();
 		this.cacheMap = createCacheMap();
 	}
 
 	// Abstract method for creating specific Entry types and cache maps
-	protected abstract Map<String, T> createCacheMap();
+	protected abstract ConcurrentMap<K, T> createCacheMap();
+
+	// Insert or update a pair, recording its victims, the engine monitor must be held
+	protected abstract void writePair(K key, V value);
+
+	@Override
+	public synchronized void createPair(K key, V value) {
+		clearEvictions();
+		writePair(key, value);
+	}
+
+	@Override
+	public synchronized List<Map.Entry<K, V>> createPairs(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		clearEvictions();
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			writePair(entry.getKey(), entry.getValue());
+		}
+		dropSupersededEvictions();
+		return evictedPairs;
+	}
+
+	// A key evicted and written again later in the batch is back in the engine,
+	// and a key evicted twice only leaves its last copy
+	private void dropSupersededEvictions() {
+		if (evictedPairs.isEmpty()) {
+			return;
+		}
+		Set<K> seen = new HashSet<>();
+		List<Map.Entry<K, V>> kept = new ArrayList<>(evictedPairs.size());
+		for (int i = evictedPairs.size() - 1; i >= 0; i--) {
+			Map.Entry<K, V> evicted = evictedPairs.get(i);
+			if (seen.add(evicted.getKey()) && !cacheMap.containsKey(evicted.getKey())) {
+				kept.add(evicted);
+			}
+		}
+		Collections.reverse(kept);
+		evictedPairs = kept;
+	}
+
+	@Override
+	public synchronized Map<K, V> findByKeys(Collection<? extends K> keys) {
+		return StorageEngine.super.findByKeys(keys);
+	}
+
+	protected int weigh(K key, V value) {
+		if (weigher == null) {
+			return 1;
+		}
+		int entryWeight = weigher.weigh(key, value);
+		if (entryWeight <= 0) {
+			throw new IllegalArgumentException("Invalid weight: " + entryWeight + " for key: " + key);
+		}
+		return entryWeight;
+	}
+
+	protected void clearEvictions() {
+		evictedPairs = Collections.emptyList();
+	}
+
+	protected void recordEviction(K key, V value) {
+		if (evictedPairs.isEmpty()) {
+			evictedPairs = new ArrayList<>(1);
+		}
+		evictedPairs.add(new AbstractMap.SimpleEntry<>(key, value));
+	}
 
 	@Override
-	public synchronized Map<String, String> getSnapShort() {
-		Map<String, String> snapshotMap = new HashMap<>(cacheMap.size());
+	public synchronized Map<K, V> getSnapShort() {
+		Map<K, V> snapshotMap = new HashMap<>(cacheMap.size());
 		cacheMap.forEach((key, node) -> snapshotMap.put(key, node.value));
 		return snapshotMap;
 	}
 
 	@Override
-	public synchronized Map.Entry<String, String> getEvictedKeyIfAny() {
-		return evictedPair;
+	public Spliterator<Map.Entry<K, V>> spliterator() {
+		// Weakly consistent traversal of the concurrent map, the monitor is never taken
+		return new EntrySpliterator<>(cacheMap.values().spliterator());
+	}
+
+	// Presents the nodes of the map as entries, splitting along with the map
+	private static final class EntrySpliterator<K, V, T extends CacheEntry<K, V>> implements Spliterator<Map.Entry<K, V>> {
+		private final Spliterator<T> nodes;
+
+		EntrySpliterator(Spliterator<T> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+			return nodes.tryAdvance(node -> action.accept(new AbstractMap.SimpleImmutableEntry<>(node.key, node.value)));
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+			nodes.forEachRemaining(node -> action.accept(new AbstractMap.SimpleImmutableEntry<>(node.key, node.value)));
+		}
+
+		@Override
+		public Spliterator<Map.Entry<K, V>> trySplit() {
+			Spliterator<T> split = nodes.trySplit();
+			return split == null ? null : new EntrySpliterator<>(split);
+		}
+
+		@Override
+		public long estimateSize() {
+			return nodes.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return nodes.characteristics();
+		}
+	}
+
+	@Override
+	public synchronized Map.Entry<K, V> getEvictedKeyIfAny() {
+		return evictedPairs.isEmpty() ? null : evictedPairs.get(0);
+	}
+
+	@Override
+	public synchronized List<Map.Entry<K, V>> getEvictedEntries() {
+		return evictedPairs;
+	}
+
+	@Override
+	public synchronized long getWeight() {
+		return weight;
 	}
 }
@@ -0,0 +1,246 @@
+package com.levelcache.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.levelcache.policy.ArcCacheEntry;
+
+/**
+ * Adaptive Replacement Cache storage engine.
+ * <p>
+ * Resident entries live in two LRU lists: T1 holds the keys seen once recently,
+ * T2 the keys seen at least twice. Each has a ghost list, B1 and B2, remembering
+ * only the keys recently evicted from it. A miss that hits a ghost list shows
+ * that its list was too short, so the target size {@code p} of T1 grows on a B1
+ * hit and shrinks on a B2 hit, by the ratio of the two ghost lists. The victim
+ * is then taken from T1 or T2 depending on whether T1 exceeds its target, which
+ * lets the engine move between recency and frequency as the workload shifts
+ * without any tuning.
+ * </p>
+ * <p>
+ * The ghost lists together remember at most as many keys as the capacity, and
+ * T1 and B1 together never exceed it, so the resident and ghost lists track at
+ * most twice the capacity, however many entries were deleted or moved out. Only
+ * the resident victims are recorded as evictions, ghosts just fade out.
+ * </p>
+ * <p>
+ * A snapshot keeps the resident lists, each entry being visited with 1 in T1
+ * and 2 in T2. The ghost lists and the target size hold no values and start
+ * afresh after a restore, the next misses rebuild them.
+ * </p>
+ */
+public class ArcStorageEngine<K, V> extends AbstractStorageEngine<K, V, ArcCacheEntry<K, V>> {
+
+	// Sentinels of the resident lists, their next entry is the least recently used
+	private final ArcCacheEntry<K, V> t1;
+	private final ArcCacheEntry<K, V> t2;
+	// Ghost lists, from the least recently evicted key
+	private final LinkedHashSet<K> b1;
+	private final LinkedHashSet<K> b2;
+	private int t1Size;
+	private int t2Size;
+	// Target size of T1
+	private int p;
+
+	public ArcStorageEngine(int capacity) {
+		super(capacity);
+		this.t1 = new ArcCacheEntry<>(null, null);
+		this.t2 = new ArcCacheEntry<>(null, null);
+		this.b1 = new LinkedHashSet<>();
+		this.b2 = new LinkedHashSet<>();
+		this.p = 0;
+	}
+
+	@Override
+	protected ConcurrentMap<K, ArcCacheEntry<K, V>> createCacheMap() {
+		return new ConcurrentHashMap<>(capacity);
+	}
+
+	@Override
+	protected void writePair(K key, V value) {
+		ArcCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry != null) {
+			// Update the value for existing key, a write counts as a hit
+			entry.value = value;
+			onHit(entry);
+			return;
+		}
+		if (capacity == 0) {
+			// Can never fit, pass it straight down
+			recordEviction(key, value);
+			return;
+		}
+		boolean frequent;
+		// The step is the ratio of the ghost lists while the key is still in its own
+		if (b1.contains(key)) {
+			// T1 was too short to keep this key, favour recency
+			p = Math.min(capacity, p + Math.max(b2.size() / b1.size(), 1));
+			b1.remove(key);
+			replace(false);
+			frequent = true;
+		} else if (b2.contains(key)) {
+			// T2 was too short to keep this key, favour frequency
+			p = Math.max(0, p - Math.max(b1.size() / b2.size(), 1));
+			b2.remove(key);
+			replace(true);
+			frequent = true;
+		} else {
+			if (t1Size + b1.size() == capacity) {
+				if (t1Size < capacity) {
+					removeOldest(b1);
+					replace(false);
+				} else {
+					// B1 is empty and T1 fills the cache, drop its victim without a ghost
+					evict(t1.next);
+				}
+			} else if (t1Size + t2Size + b1.size() + b2.size() >= capacity) {
+				if (t1Size + t2Size + b1.size() + b2.size() >= 2 * capacity) {
+					removeOldest(b2);
+				}
+				replace(false);
+			}
+			frequent = false;
+		}
+		// Add new key-value pair to the cache
+		ArcCacheEntry<K, V> newEntry = new ArcCacheEntry<>(key, value);
+		newEntry.weight = 1;
+		newEntry.frequent = frequent;
+		if (frequent) {
+			newEntry.linkBefore(t2);
+			t2Size++;
+		} else {
+			newEntry.linkBefore(t1);
+			t1Size++;
+		}
+		cacheMap.put(key, newEntry);
+		++size;
+		++weight;
+		trimGhosts();
+	}
+
+	// Bound the ghost lists after an insert, deleted entries leave no ghost but
+	// make room in the resident lists the ghosts must not grow into
+	private void trimGhosts() {
+		while (t1Size + b1.size() > capacity) {
+			removeOldest(b1);
+		}
+		while (b1.size() + b2.size() > capacity) {
+			removeOldest(b2.isEmpty() ? b1 : b2);
+		}
+	}
+
+	private void onHit(ArcCacheEntry<K, V> entry) {
+		entry.unlink();
+		if (!entry.frequent) {
+			entry.frequent = true;
+			t1Size--;
+			t2Size++;
+		}
+		entry.linkBefore(t2);
+	}
+
+	// Make room for a new entry when the cache is full, evicting from T1 or T2
+	// depending on the target size of T1, and remember the victim as a ghost
+	private void replace(boolean inB2) {
+		if (t1Size + t2Size < capacity) {
+			return;
+		}
+		if (t1Size > 0 && (t1Size > p || (inB2 && t1Size == p))) {
+			ArcCacheEntry<K, V> victim = t1.next;
+			evict(victim);
+			b1.add(victim.key);
+		} else {
+			ArcCacheEntry<K, V> victim = t2.next;
+			evict(victim);
+			b2.add(victim.key);
+		}
+	}
+
+	private static <K> void removeOldest(LinkedHashSet<K> ghosts) {
+		Iterator<K> iterator = ghosts.iterator();
+		if (iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	private void evict(ArcCacheEntry<K, V> victim) {
+		remove(victim);
+		// Record the evicted pair
+		recordEviction(victim.key, victim.value);
+	}
+
+	private void remove(ArcCacheEntry<K, V> entry) {
+		entry.unlink();
+		if (entry.frequent) {
+			t2Size--;
+		} else {
+			t1Size--;
+		}
+		cacheMap.remove(entry.key);
+		--size;
+		--weight;
+	}
+
+	/**
+	 * Returns the number of evicted keys the ghost lists remember.
+	 */
+	public synchronized int getGhostCount() {
+		return b1.size() + b2.size();
+	}
+
+	@Override
+	public synchronized V findByKey(K key) {
+		ArcCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry == null) {
+			return null;
+		}
+		onHit(entry);
+		return entry.value;
+	}
+
+	@Override
+	public synchronized void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		for (ArcCacheEntry<K, V> entry = t1.next; entry != t1; entry = entry.next) {
+			visitor.visit(entry.key, entry.value, 1);
+		}
+		for (ArcCacheEntry<K, V> entry = t2.next; entry != t2; entry = entry.next) {
+			visitor.visit(entry.key, entry.value, 2);
+		}
+	}
+
+	@Override
+	public synchronized void restorePair(K key, V value, int frequency) {
+		clearEvictions();
+		if (frequency < 2 || capacity == 0 || cacheMap.containsKey(key)) {
+			writePair(key, value);
+			return;
+		}
+		// Seen twice before the snapshot, back to the most recent end of T2
+		b1.remove(key);
+		b2.remove(key);
+		replace(false);
+		ArcCacheEntry<K, V> entry = new ArcCacheEntry<>(key, value);
+		entry.weight = 1;
+		entry.frequent = true;
+		entry.linkBefore(t2);
+		t2Size++;
+		cacheMap.put(key, entry);
+		++size;
+		++weight;
+		trimGhosts();
+	}
+
+	@Override
+	public synchronized V deleteByKey(K key) {
+		ArcCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry == null) {
+			return null;
+		}
+		// The key moves elsewhere rather than being evicted, it leaves no ghost
+		remove(entry);
+		return entry.value;
+	}
+}
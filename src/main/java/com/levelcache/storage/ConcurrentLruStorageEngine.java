@@ -0,0 +1,150 @@
+package com.levelcache.storage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.levelcache.policy.LruCacheEntry;
+import com.levelcache.util.ReadBuffer;
+
+/**
+ * LRU storage engine whose hits never block each other.
+ * <p>
+ * Lookups go straight to a {@link ConcurrentHashMap}. Instead of rewiring the
+ * access-order list on every hit, the hit is recorded in one of several striped
+ * read buffers. The buffers are drained, and the recorded nodes moved to the MRU
+ * position, by whichever thread takes the eviction lock: writers always do before
+ * touching the list, readers only try to when their buffer is full. The LRU order
+ * is therefore exact for a single thread and approximate under concurrent reads.
+ * </p>
+ */
+public class ConcurrentLruStorageEngine<K, V> extends LruStorageEngine<K, V> {
+
+	private static final int READ_BUFFER_SIZE = 16;
+	private static final int NUM_READ_BUFFERS = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+	// Guards the access-order list, always taken before the engine monitor
+	private final ReentrantLock evictionLock;
+	private final ReadBuffer<LruCacheEntry<K, V>>[] readBuffers;
+
+	public ConcurrentLruStorageEngine(int capacity) {
+		super(capacity);
+		this.evictionLock = new ReentrantLock();
+		this.readBuffers = createReadBuffers();
+	}
+
+	public ConcurrentLruStorageEngine(long maxWeight, Weigher<? super K, ? super V> weigher) {
+		super(maxWeight, weigher);
+		this.evictionLock = new ReentrantLock();
+		this.readBuffers = createReadBuffers();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> ReadBuffer<LruCacheEntry<K, V>>[] createReadBuffers() {
+		ReadBuffer<LruCacheEntry<K, V>>[] readBuffers = new ReadBuffer[NUM_READ_BUFFERS];
+		for (int i = 0; i < readBuffers.length; i++) {
+			readBuffers[i] = new ReadBuffer<>(READ_BUFFER_SIZE);
+		}
+		return readBuffers;
+	}
+
+	private static int ceilingPowerOfTwo(int x) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(Math.max(1, x) - 1));
+	}
+
+	@Override
+	protected ConcurrentMap<K, LruCacheEntry<K, V>> createCacheMap() {
+		return new ConcurrentHashMap<>(capacity);
+	}
+
+	@Override
+	public V findByKey(K key) {
+		LruCacheEntry<K, V> node = cacheMap.get(key);
+		if (node == null) {
+			return null;
+		}
+		ReadBuffer<LruCacheEntry<K, V>> buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+		if (!buffer.offer(node) && evictionLock.tryLock()) {
+			try {
+				drainReadBuffers();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+		return node.value;
+	}
+
+	@Override
+	public Map<K, V> findByKeys(Collection<? extends K> keys) {
+		// Hits stay lock-free, each one is recorded like a single read
+		Map<K, V> found = new HashMap<>(keys.size());
+		for (K key : keys) {
+			V value = findByKey(key);
+			if (value != null) {
+				found.put(key, value);
+			}
+		}
+		return found;
+	}
+
+	// Replay the recorded hits on the access-order list, evictionLock must be held
+	private void drainReadBuffers() {
+		for (ReadBuffer<LruCacheEntry<K, V>> buffer : readBuffers) {
+			buffer.drainTo(node -> {
+				// Skip nodes evicted or deleted since the hit was recorded
+				if (cacheMap.get(node.key) == node) {
+					updateCacheNode(node);
+				}
+			});
+		}
+	}
+
+	@Override
+	public void createPair(K key, V value) {
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			super.createPair(key, value);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public List<Map.Entry<K, V>> createPairs(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			return super.createPairs(entries);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			super.forEachInEvictionOrder(visitor);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public V deleteByKey(K key) {
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			return super.deleteByKey(key);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+}
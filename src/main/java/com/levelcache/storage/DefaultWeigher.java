@@ -0,0 +1,33 @@
+package com.levelcache.storage;
+
+/**
+ * Weigher used when none is configured. It estimates the number of heap bytes
+ * retained by an entry: the engine's entry node plus a shallow estimate of the
+ * key and the value, counting strings as two bytes per character.
+ */
+public class DefaultWeigher implements Weigher<Object, Object> {
+
+	// Header, key, value and link fields of an entry node plus its map slot
+	private static final int ENTRY_OVERHEAD = 64;
+	private static final int OBJECT_HEADER = 16;
+	private static final int ARRAY_HEADER = 16;
+
+	@Override
+	public int weigh(Object key, Object value) {
+		long weight = ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+		return (int) Math.min(Integer.MAX_VALUE, weight);
+	}
+
+	private static long sizeOf(Object object) {
+		if (object instanceof CharSequence) {
+			return OBJECT_HEADER + 8 + ARRAY_HEADER + 2L * ((CharSequence) object).length();
+		}
+		if (object instanceof byte[]) {
+			return ARRAY_HEADER + ((byte[]) object).length;
+		}
+		if (object instanceof Long || object instanceof Double) {
+			return OBJECT_HEADER + 8;
+		}
+		return OBJECT_HEADER;
+	}
+}
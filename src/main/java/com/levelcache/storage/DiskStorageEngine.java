@@ -0,0 +1,425 @@
+package com.levelcache.storage;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import com.levelcache.exception.CacheWritingException;
+import com.levelcache.serialization.Serializer;
+
+/**
+ * Log-structured LRU storage engine backed by memory-mapped files.
+ * <p>
+ * Every write appends a {@code [key length][value length][key][value]} record to
+ * the active segment file, and reads are served straight from the memory-mapped
+ * segments. Only the key index and the LRU order live on the heap. Overwritten,
+ * evicted and deleted records become garbage in their segment; once a sealed
+ * segment is mostly garbage, a background compactor copies its live records to
+ * the active segment in small batches and deletes the file.
+ * </p>
+ * <p>
+ * The files only back the level while it lives, they are removed when the engine
+ * is closed, and a new engine never reads the files of an earlier one. The level
+ * outlives a restart through {@link com.levelcache.core.LevelCache#saveSnapshot}
+ * and {@link com.levelcache.core.LevelCache#loadSnapshot}, which keep its LRU
+ * order. This engine is meant to be the cheap, very large, last level.
+ * </p>
+ */
+public class DiskStorageEngine<K, V> implements StorageEngine<K, V> {
+
+	private static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+	private static final int RECORD_HEADER = 8;
+	private static final double COMPACTION_THRESHOLD = 0.5;
+	private static final int COMPACTION_BATCH = 256;
+	private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "levelcache-disk-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final Consumer<ByteBuffer> UNMAPPER = unmapper();
+
+	private final int capacity;
+	private final int segmentSize;
+	private final Path directory;
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final Map<K, Location<K>> index;
+	private final List<LogSegment> segments;
+	private LogSegment activeSegment;
+	private int nextSegmentId;
+	// Pointer to track Most Recent Used Key
+	private Location<K> mruNode;
+	// Pointer to track Least Recent Used Key
+	private Location<K> lruNode;
+	private boolean compactionScheduled;
+	private boolean closed;
+	private Map.Entry<K, V> evictedPair;
+
+	public DiskStorageEngine(int capacity, Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this(capacity, directory, DEFAULT_SEGMENT_SIZE, keySerializer, valueSerializer);
+	}
+
+	public DiskStorageEngine(int capacity, Path directory, int segmentSize, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer) {
+		this.capacity = capacity;
+		this.segmentSize = segmentSize;
+		this.directory = directory;
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.index = new HashMap<>();
+		this.segments = new ArrayList<>();
+		this.nextSegmentId = 0;
+		this.mruNode = this.lruNode = null;
+	}
+
+	/**
+	 * Releases a mapping right away rather than once the buffer is collected, so a
+	 * deleted segment gives back its address space and disk blocks. Relies on
+	 * {@code sun.misc.Unsafe#invokeCleaner}, and leaves the mapping to the garbage
+	 * collector on runtimes without it. The buffer must not be read afterwards.
+	 */
+	private static Consumer<ByteBuffer> unmapper() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			MethodHandle invokeCleaner = MethodHandles.lookup()
+					.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+					.bindTo(field.get(null));
+			return buffer -> {
+				try {
+					invokeCleaner.invokeExact(buffer);
+				} catch (Throwable e) {
+					// Unmapped when collected instead
+				}
+			};
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return buffer -> {};
+		}
+	}
+
+	/**
+	 * Position of the latest record of a key, linked in LRU order.
+	 */
+	private static final class Location<K> {
+		final K key;
+		LogSegment segment;
+		int offset;
+		int length;
+		Location<K> prev, next;
+
+		Location(K key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * A memory-mapped, append-only segment file.
+	 */
+	private static final class LogSegment {
+		final Path file;
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+		int writeOffset;
+		int garbageBytes;
+		boolean deleted;
+
+		LogSegment(Path file, int size) throws IOException {
+			this.file = file;
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			try {
+				this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} catch (IOException | RuntimeException e) {
+				// Leave neither the channel nor an empty file behind
+				try {
+					channel.close();
+					Files.deleteIfExists(file);
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+				throw e;
+			}
+		}
+
+		int remaining() {
+			return buffer.capacity() - writeOffset;
+		}
+
+		int append(byte[] keyBytes, byte[] valueBytes) {
+			int offset = writeOffset;
+			buffer.position(offset);
+			buffer.putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+			writeOffset = buffer.position();
+			return offset;
+		}
+
+		byte[] read(int offset, int length) {
+			byte[] bytes = new byte[length];
+			buffer.position(offset);
+			buffer.get(bytes);
+			return bytes;
+		}
+
+		// Every read of the buffer holds the engine monitor, as does the caller
+		void delete() {
+			if (deleted) {
+				return;
+			}
+			deleted = true;
+			UNMAPPER.accept(buffer);
+			try {
+				channel.close();
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				// The file goes away with the directory at the latest
+			}
+		}
+	}
+
+	private LogSegment segmentFor(int recordLength) {
+		if (activeSegment == null || activeSegment.remaining() < recordLength) {
+			Path file = directory.resolve(String.format("segment-%08d.log", nextSegmentId++));
+			try {
+				activeSegment = new LogSegment(file, Math.max(segmentSize, recordLength));
+			} catch (IOException | RuntimeException e) {
+				throw new CacheWritingException("Cannot create segment file " + file, e);
+			}
+			segments.add(activeSegment);
+		}
+		return activeSegment;
+	}
+
+	private void writeRecord(Location<K> location, byte[] keyBytes, byte[] valueBytes) {
+		int length = RECORD_HEADER + keyBytes.length + valueBytes.length;
+		LogSegment segment = segmentFor(length);
+		location.segment = segment;
+		location.offset = segment.append(keyBytes, valueBytes);
+		location.length = length;
+	}
+
+	private byte[] readValue(Location<K> location) {
+		int keyLength = location.segment.buffer.getInt(location.offset);
+		int valueLength = location.segment.buffer.getInt(location.offset + 4);
+		return location.segment.read(location.offset + RECORD_HEADER + keyLength, valueLength);
+	}
+
+	// Account the record as dead, dropping its segment once nothing in it is live
+	private void release(LogSegment segment, int length) {
+		segment.garbageBytes += length;
+		if (segment != activeSegment && segment.garbageBytes == segment.writeOffset) {
+			segments.remove(segment);
+			segment.delete();
+		} else if (!compactionScheduled && segment != activeSegment
+				&& segment.garbageBytes >= segment.writeOffset * COMPACTION_THRESHOLD) {
+			compactionScheduled = true;
+			COMPACTOR.execute(this::compact);
+		}
+	}
+
+	private void linkAsMru(Location<K> node) {
+		node.prev = null;
+		node.next = mruNode;
+		if (mruNode == null) {
+			lruNode = node;
+		} else {
+			mruNode.prev = node;
+		}
+		mruNode = node;
+	}
+
+	private void unlink(Location<K> node) {
+		if (node.prev == null) {
+			mruNode = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if (node.next == null) {
+			lruNode = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+		node.prev = node.next = null;
+	}
+
+	@Override
+	public synchronized void createPair(K key, V value) {
+		evictedPair = null;
+		byte[] keyBytes = keySerializer.serialize(key);
+		byte[] valueBytes = valueSerializer.serialize(value);
+		Location<K> location = index.get(key);
+		if (location != null) {
+			// The previous record of the key becomes garbage
+			LogSegment previous = location.segment;
+			int previousLength = location.length;
+			writeRecord(location, keyBytes, valueBytes);
+			unlink(location);
+			linkAsMru(location);
+			release(previous, previousLength);
+			return;
+		}
+		if (index.size() == capacity) {
+			Location<K> victim = lruNode;
+			evictedPair = new AbstractMap.SimpleEntry<>(victim.key, valueSerializer.deserialize(readValue(victim)));
+			index.remove(victim.key);
+			unlink(victim);
+			release(victim.segment, victim.length);
+		}
+		location = new Location<>(key);
+		writeRecord(location, keyBytes, valueBytes);
+		index.put(key, location);
+		linkAsMru(location);
+	}
+
+	@Override
+	public synchronized List<Map.Entry<K, V>> createPairs(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		return StorageEngine.super.createPairs(entries);
+	}
+
+	@Override
+	public synchronized Map<K, V> findByKeys(Collection<? extends K> keys) {
+		return StorageEngine.super.findByKeys(keys);
+	}
+
+	@Override
+	public synchronized V findByKey(K key) {
+		Location<K> location = index.get(key);
+		if (location == null) {
+			return null;
+		}
+		unlink(location);
+		linkAsMru(location);
+		return valueSerializer.deserialize(readValue(location));
+	}
+
+	@Override
+	public synchronized V deleteByKey(K key) {
+		Location<K> location = index.remove(key);
+		if (location == null) {
+			return null;
+		}
+		V value = valueSerializer.deserialize(readValue(location));
+		unlink(location);
+		release(location.segment, location.length);
+		return value;
+	}
+
+	@Override
+	public synchronized Map.Entry<K, V> getEvictedKeyIfAny() {
+		return evictedPair;
+	}
+
+	@Override
+	public synchronized void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		for (Location<K> node = lruNode; node != null; node = node.prev) {
+			visitor.visit(node.key, valueSerializer.deserialize(readValue(node)), 0);
+		}
+	}
+
+	@Override
+	public synchronized Map<K, V> getSnapShort() {
+		Map<K, V> snapshotMap = new HashMap<>(index.size());
+		for (Location<K> node = mruNode; node != null; node = node.next) {
+			snapshotMap.put(node.key, valueSerializer.deserialize(readValue(node)));
+		}
+		return snapshotMap;
+	}
+
+	private synchronized LogSegment nextCompactionCandidate() {
+		for (LogSegment segment : segments) {
+			if (segment != activeSegment && segment.garbageBytes >= segment.writeOffset * COMPACTION_THRESHOLD) {
+				return segment;
+			}
+		}
+		compactionScheduled = false;
+		return null;
+	}
+
+	// Copy the live records of mostly dead segments to the active one, a batch at a time
+	private void compact() {
+		LogSegment segment;
+		while ((segment = nextCompactionCandidate()) != null) {
+			int offset = 0;
+			while (offset >= 0) {
+				offset = compactBatch(segment, offset);
+			}
+		}
+	}
+
+	private synchronized int compactBatch(LogSegment segment, int offset) {
+		// Unmapped in between batches if its last live record went away
+		if (closed || segment.deleted) {
+			return -1;
+		}
+		for (int n = 0; n < COMPACTION_BATCH && offset < segment.writeOffset; n++) {
+			int keyLength = segment.buffer.getInt(offset);
+			int valueLength = segment.buffer.getInt(offset + 4);
+			int length = RECORD_HEADER + keyLength + valueLength;
+			byte[] keyBytes = segment.read(offset + RECORD_HEADER, keyLength);
+			Location<K> location = index.get(keySerializer.deserialize(keyBytes));
+			if (location != null && location.segment == segment && location.offset == offset) {
+				// Still the latest record of the key, move it
+				byte[] valueBytes = segment.read(offset + RECORD_HEADER + keyLength, valueLength);
+				writeRecord(location, keyBytes, valueBytes);
+			}
+			offset += length;
+		}
+		if (offset < segment.writeOffset) {
+			return offset;
+		}
+		segments.remove(segment);
+		segment.delete();
+		return -1;
+	}
+
+	/**
+	 * Returns the number of bytes currently written to the segment files,
+	 * including records not yet reclaimed by compaction.
+	 */
+	public synchronized long getDiskBytes() {
+		long bytes = 0;
+		for (LogSegment segment : segments) {
+			bytes += segment.writeOffset;
+		}
+		return bytes;
+	}
+
+	@Override
+	public synchronized long getWeight() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		for (LogSegment segment : segments) {
+			segment.delete();
+		}
+		segments.clear();
+		index.clear();
+		mruNode = lruNode = null;
+		activeSegment = null;
+		try {
+			Files.deleteIfExists(directory);
+		} catch (IOException e) {
+			// Left behind for the operator, the segment files are gone
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.levelcache.storage;
+
+/**
+ * Receives the entries of a {@link StorageEngine} along with the state its
+ * eviction policy keeps about them, see
+ * {@link StorageEngine#forEachInEvictionOrder(EntryVisitor)}.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+@FunctionalInterface
+public interface EntryVisitor<K, V> {
+
+    /**
+     * Visits an entry.
+     *
+     * @param key       the key of the entry
+     * @param value     the value of the entry
+     * @param frequency the access frequency of the entry, 0 when the policy does not count accesses.
+     *                  Policies keeping several queues fold the queue of the entry into it, the
+     *                  value is only meant for {@link StorageEngine#restorePair} of the same policy
+     */
+    public void visit(K key, V value, int frequency);
+}
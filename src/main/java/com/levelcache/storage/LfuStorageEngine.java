@@ -1,83 +1,182 @@
 package com.levelcache.storage;
 
-import java.util.AbstractMap;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.levelcache.policy.FrequencyNode;
 import com.levelcache.policy.LfuCacheEntry;
 
 
-public class LfuStorageEngine extends AbstractStorageEngine<LfuCacheEntry> {
-	
-	private int minFrequency;
-	private Map<Integer, LinkedHashSet<String>> frequencyMap;
-	
+/**
+ * LFU storage engine with constant time operations.
+ * <p>
+ * Entries are kept in a doubly-linked list of {@link FrequencyNode} buckets
+ * ordered by frequency, each holding the entries of that frequency from the
+ * oldest to the most recent. The victim is the oldest entry of the first bucket,
+ * and a frequency bump only relinks the entry into the neighbouring bucket, so
+ * neither requires a lookup or boxes the frequency.
+ * </p>
+ */
+public class LfuStorageEngine<K, V> extends AbstractStorageEngine<K, V, LfuCacheEntry<K, V>> {
+
+	// Sentinel of the circular bucket list, its next bucket has the minimum frequency
+	private final FrequencyNode<K, V> frequencyList;
+	// An emptied bucket kept around to be reused instead of allocating a new one
+	private FrequencyNode<K, V> spareNode;
+
 	public LfuStorageEngine(int capacity) {
 		super(capacity);
-		this.frequencyMap = new HashMap<>();
+		this.frequencyList = new FrequencyNode<>(0);
 	}
-	
+
+	public LfuStorageEngine(long maxWeight, Weigher<? super K, ? super V> weigher) {
+		super(maxWeight, weigher);
+		this.frequencyList = new FrequencyNode<>(0);
+	}
+
 	@Override
-	protected Map<String, LfuCacheEntry> createCacheMap() {
-		return new HashMap<>(capacity);
+	protected ConcurrentMap<K, LfuCacheEntry<K, V>> createCacheMap() {
+		return new ConcurrentHashMap<>(capacity);
 	}
-	
-	private void updateFrequencyMap(int currentFrequency, int updatedFrequency, String cacheKey) {
-		if(currentFrequency < updatedFrequency) {
-			frequencyMap.get(currentFrequency).remove(cacheKey);
-			// If currentFrequency holds no key, remove the frequency from map
-			if(currentFrequency == minFrequency && frequencyMap.get(currentFrequency).isEmpty()) {
-				frequencyMap.remove(currentFrequency);
-				++minFrequency;
-			}
+
+	private FrequencyNode<K, V> newFrequencyNode(int frequency) {
+		FrequencyNode<K, V> node = spareNode;
+		if (node == null) {
+			return new FrequencyNode<>(frequency);
+		}
+		spareNode = null;
+		node.frequency = frequency;
+		return node;
+	}
+
+	private void removeFromBucket(LfuCacheEntry<K, V> entry) {
+		FrequencyNode<K, V> node = entry.parent;
+		node.remove(entry);
+		if (node.isEmpty()) {
+			node.unlink();
+			spareNode = node;
+		}
+	}
+
+	private void incrementFrequency(LfuCacheEntry<K, V> entry) {
+		FrequencyNode<K, V> node = entry.parent;
+		int frequency = node.frequency + 1;
+		FrequencyNode<K, V> next = node.next;
+		if (next.frequency == frequency) {
+			// Move the entry into the existing bucket
+			removeFromBucket(entry);
+			next.append(entry);
+		} else if (node.head == node.tail) {
+			// Sole entry of its bucket, bump the bucket in place
+			node.frequency = frequency;
+		} else {
+			FrequencyNode<K, V> bucket = newFrequencyNode(frequency);
+			node.linkAfter(bucket);
+			node.remove(entry);
+			bucket.append(entry);
 		}
-		frequencyMap.putIfAbsent(updatedFrequency, new LinkedHashSet<>());
-		frequencyMap.get(updatedFrequency).add(cacheKey);
 	}
 
 	@Override
-	public synchronized void createPair(String key, String value) {
-		if(cacheMap.containsKey(key)) {
+	protected void writePair(K key, V value) {
+		int entryWeight = weigh(key, value);
+		LfuCacheEntry<K, V> entry = cacheMap.get(key);
+		if(entry != null) {
 			// Update the value for existing key
-			LfuCacheEntry entry = cacheMap.get(key);
+			weight += entryWeight - entry.weight;
 			entry.setValue(value);
+			entry.weight = entryWeight;
 			// Update frequency for existing key
-			updateFrequencyMap(entry.frequency, entry.frequency+1, key);
-			entry.frequency++;
+			incrementFrequency(entry);
+			while(weight > maxWeight) {
+				evictLfuKey();
+			}
 			return;
 		}
-		if(size == capacity) {
+		if(entryWeight > maxWeight) {
+			// Can never fit, pass it straight down
+			recordEviction(key, value);
+			return;
+		}
+		while(weight + entryWeight > maxWeight) {
 			evictLfuKey();
 		}
 		// Add new key-value pair to the cache
 		size++;
-		minFrequency = 1;
-		LfuCacheEntry newEntry = new LfuCacheEntry(key, value);
+		weight += entryWeight;
+		LfuCacheEntry<K, V> newEntry = new LfuCacheEntry<>(key, value);
+		newEntry.weight = entryWeight;
 		cacheMap.put(key, newEntry);
-		updateFrequencyMap(1, 1, key);
+		FrequencyNode<K, V> first = frequencyList.next;
+		if (first.frequency != 1) {
+			first = newFrequencyNode(1);
+			frequencyList.linkAfter(first);
+		}
+		first.append(newEntry);
 	}
-	
+
 	private void evictLfuKey() {
 		size -= 1;
-		String key = frequencyMap.get(minFrequency).iterator().next();
-		frequencyMap.get(minFrequency).remove(key);
-		String value = cacheMap.get(key).value;
-		cacheMap.remove(key);
-		// Set new evictedPair
-		evictedPair = new AbstractMap.SimpleEntry<>(key, value);
+		LfuCacheEntry<K, V> victim = frequencyList.next.head;
+		weight -= victim.weight;
+		removeFromBucket(victim);
+		cacheMap.remove(victim.key);
+		// Record the evicted pair
+		recordEviction(victim.key, victim.value);
 	}
 
 	@Override
-	public synchronized String findByKey(String key) {
-		if (!cacheMap.containsKey(key)) {
+	public synchronized V findByKey(K key) {
+		LfuCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry == null) {
 			return null;
 		}
 		// Update frequency for existing key
-		LfuCacheEntry entry = cacheMap.get(key);
-		updateFrequencyMap(entry.frequency, entry.frequency+1, key);
-		entry.frequency++;
+		incrementFrequency(entry);
 		// Return value to the caller
 		return entry.value;
 	}
+
+	@Override
+	public synchronized void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		for (FrequencyNode<K, V> node = frequencyList.next; node != frequencyList; node = node.next) {
+			for (LfuCacheEntry<K, V> entry = node.head; entry != null; entry = entry.next) {
+				visitor.visit(entry.key, entry.value, node.frequency);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void restorePair(K key, V value, int frequency) {
+		clearEvictions();
+		writePair(key, value);
+		LfuCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry == null || frequency <= entry.parent.frequency) {
+			return;
+		}
+		removeFromBucket(entry);
+		// Entries come back by increasing frequency, the bucket is usually the last one
+		FrequencyNode<K, V> node = frequencyList.prev;
+		while (node != frequencyList && node.frequency > frequency) {
+			node = node.prev;
+		}
+		if (node.frequency != frequency) {
+			FrequencyNode<K, V> bucket = newFrequencyNode(frequency);
+			node.linkAfter(bucket);
+			node = bucket;
+		}
+		node.append(entry);
+	}
+
+	@Override
+	public synchronized V deleteByKey(K key) {
+		LfuCacheEntry<K, V> entry = cacheMap.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		removeFromBucket(entry);
+		--size;
+		weight -= entry.weight;
+		return entry.value;
+	}
 }
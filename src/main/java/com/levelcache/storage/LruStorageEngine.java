@@ -1,42 +1,58 @@
 package com.levelcache.storage;
 
-import java.util.AbstractMap;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.levelcache.policy.LruCacheEntry;
 
-public class LruStorageEngine extends AbstractStorageEngine<LruCacheEntry> {
+public class LruStorageEngine<K, V> extends AbstractStorageEngine<K, V, LruCacheEntry<K, V>> {
 	
 	// Pointer to track Most Recent Used Key
-	private LruCacheEntry mruNode;
+	private LruCacheEntry<K, V> mruNode;
 	// Pointer to track Least Recent Used Key
-	private LruCacheEntry lruNode;
+	private LruCacheEntry<K, V> lruNode;
 
 	public LruStorageEngine(int capacity) {
 		super(capacity);
 		this.mruNode = this.lruNode = null;
 	}
 
+	public LruStorageEngine(long maxWeight, Weigher<? super K, ? super V> weigher) {
+		super(maxWeight, weigher);
+		this.mruNode = this.lruNode = null;
+	}
+
 	@Override
-	protected Map<String, LruCacheEntry> createCacheMap() {
-		return new HashMap<>(capacity);
+	protected ConcurrentMap<K, LruCacheEntry<K, V>> createCacheMap() {
+		return new ConcurrentHashMap<>(capacity);
 	}
 
 	@Override
-	public synchronized void createPair(String key, String value) {
-		if (cacheMap.containsKey(key)) {
+	protected void writePair(K key, V value) {
+		int entryWeight = weigh(key, value);
+		LruCacheEntry<K, V> node = cacheMap.get(key);
+		if (node != null) {
 			// Update the value for existing key
-			LruCacheEntry node = (LruCacheEntry) cacheMap.get(key);
+			weight += entryWeight - node.weight;
 			node.value = value;
+			node.weight = entryWeight;
 			updateCacheNode(node);
+			while (weight > maxWeight) {
+				evictLruKey();
+			}
 			return;
 		}
-		if (size == capacity) {
+		if (entryWeight > maxWeight) {
+			// Can never fit, pass it straight down
+			recordEviction(key, value);
+			return;
+		}
+		while (weight + entryWeight > maxWeight) {
 			evictLruKey();
 		}
 		// Add new key-value pair to the cache
-		LruCacheEntry newNode = new LruCacheEntry(key, value);
+		LruCacheEntry<K, V> newNode = new LruCacheEntry<>(key, value);
+		newNode.weight = entryWeight;
 		if (mruNode == null) {
 			// Cache is empty
 			mruNode = lruNode = newNode;
@@ -47,11 +63,12 @@ public class LruStorageEngine extends AbstractStorageEngine<LruCacheEntry> {
 		}
 		cacheMap.put(key, newNode);
 		++size;
+		weight += entryWeight;
 	}
 
 	private void evictLruKey() {
-		LruCacheEntry nodeToRemove = lruNode;
-		evictedPair = new AbstractMap.SimpleEntry<>(lruNode.key, lruNode.value);
+		LruCacheEntry<K, V> nodeToRemove = lruNode;
+		recordEviction(lruNode.key, lruNode.value);
 		if (lruNode == mruNode) {
 			// Only one node in the cache
 			lruNode = mruNode = null;
@@ -63,9 +80,24 @@ public class LruStorageEngine extends AbstractStorageEngine<LruCacheEntry> {
 		nodeToRemove.prev = null;
 		cacheMap.remove(nodeToRemove.key);
 		size = size - 1;
+		weight -= nodeToRemove.weight;
+	}
+
+	private void unlinkCacheNode(LruCacheEntry<K, V> node) {
+		if (node.prev == null) {
+			mruNode = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if (node.next == null) {
+			lruNode = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+		node.prev = node.next = null;
 	}
 
-	private void updateCacheNode(LruCacheEntry node) {
+	protected void updateCacheNode(LruCacheEntry<K, V> node) {
 		if (node == mruNode) {
 			return;
 		}
@@ -85,12 +117,32 @@ public class LruStorageEngine extends AbstractStorageEngine<LruCacheEntry> {
 	}
 
 	@Override
-	public synchronized String findByKey(String key) {
-		if (!cacheMap.containsKey(key)) {
+	public synchronized V findByKey(K key) {
+		LruCacheEntry<K, V> node = cacheMap.get(key);
+		if (node == null) {
+			return null;
+		}
+		updateCacheNode(node);
+		return node.value;
+	}
+
+	@Override
+	public synchronized void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		for (LruCacheEntry<K, V> node = lruNode; node != null; node = node.prev) {
+			visitor.visit(node.key, node.value, 0);
+		}
+	}
+
+	@Override
+	public synchronized V deleteByKey(K key) {
+		LruCacheEntry<K, V> node = cacheMap.remove(key);
+		if (node == null) {
 			return null;
 		}
-		updateCacheNode((LruCacheEntry) cacheMap.get(key));
-		return cacheMap.get(key).value;
+		unlinkCacheNode(node);
+		--size;
+		weight -= node.weight;
+		return node.value;
 	}
 
 }
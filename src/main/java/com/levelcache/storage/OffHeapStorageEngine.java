@@ -0,0 +1,343 @@
+package com.levelcache.storage;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.levelcache.serialization.Serializer;
+
+/**
+ * LRU storage engine that keeps keys, values and eviction metadata outside of
+ * the Java heap.
+ * <p>
+ * Memory is carved out of direct {@link ByteBuffer} pages in fixed size chunks.
+ * A record starts with a head chunk holding its header (hash, hash chain link,
+ * LRU links and lengths) followed by the serialized key and value, which spill
+ * over into further chunks as needed. Freed chunks are recycled through a free
+ * list threaded through the chunks themselves. The only on-heap structure is the
+ * {@code int[]} hash table pointing at the head chunks, so a level holding
+ * millions of entries costs the garbage collector a single array.
+ * </p>
+ * <p>
+ * Values are decoded on every read, which makes this engine a fit for large,
+ * cold, lower levels rather than for L1.
+ * </p>
+ */
+public class OffHeapStorageEngine<K, V> implements StorageEngine<K, V> {
+
+	private static final int CHUNK_SIZE = 64;
+	private static final int CHUNKS_PER_PAGE = 1 << 14;
+	private static final int NIL = -1;
+
+	// Layout of every chunk
+	private static final int NEXT_CHUNK = 0;
+	private static final int DATA = 4;
+	// Layout of the head chunk of a record
+	private static final int HASH = 4;
+	private static final int BUCKET_NEXT = 8;
+	private static final int LRU_PREV = 12;
+	private static final int LRU_NEXT = 16;
+	private static final int KEY_LENGTH = 20;
+	private static final int VALUE_LENGTH = 24;
+	private static final int HEAD_DATA = 28;
+
+	private final int capacity;
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final List<ByteBuffer> pages;
+	// Head chunk of the first record of each hash chain
+	private final int[] buckets;
+	// Head of the list of recycled chunks, linked through NEXT_CHUNK
+	private int freeChunk;
+	// Number of chunks handed out from the pages so far
+	private int allocatedChunks;
+	private int size;
+	private int mruChunk;
+	private int lruChunk;
+	private Map.Entry<K, V> evictedPair;
+
+	public OffHeapStorageEngine(int capacity, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this.capacity = capacity;
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.pages = new ArrayList<>();
+		this.buckets = new int[Integer.highestOneBit(Math.max(1, capacity)) << 1];
+		Arrays.fill(buckets, NIL);
+		this.freeChunk = NIL;
+		this.allocatedChunks = 0;
+		this.size = 0;
+		this.mruChunk = this.lruChunk = NIL;
+	}
+
+	private ByteBuffer page(int chunk) {
+		return pages.get(chunk / CHUNKS_PER_PAGE);
+	}
+
+	private static int base(int chunk) {
+		return (chunk % CHUNKS_PER_PAGE) * CHUNK_SIZE;
+	}
+
+	private int getInt(int chunk, int offset) {
+		return page(chunk).getInt(base(chunk) + offset);
+	}
+
+	private void setInt(int chunk, int offset, int value) {
+		page(chunk).putInt(base(chunk) + offset, value);
+	}
+
+	private int allocateChunk() {
+		if (freeChunk != NIL) {
+			int chunk = freeChunk;
+			freeChunk = getInt(chunk, NEXT_CHUNK);
+			return chunk;
+		}
+		if (allocatedChunks == pages.size() * CHUNKS_PER_PAGE) {
+			pages.add(ByteBuffer.allocateDirect(CHUNKS_PER_PAGE * CHUNK_SIZE));
+		}
+		return allocatedChunks++;
+	}
+
+	private void freeChunks(int head) {
+		int chunk = head;
+		while (chunk != NIL) {
+			int next = getInt(chunk, NEXT_CHUNK);
+			setInt(chunk, NEXT_CHUNK, freeChunk);
+			freeChunk = chunk;
+			chunk = next;
+		}
+	}
+
+	private static int hash(byte[] keyBytes) {
+		int h = Arrays.hashCode(keyBytes);
+		return h ^ (h >>> 16);
+	}
+
+	private int bucketOf(int hash) {
+		return hash & (buckets.length - 1);
+	}
+
+	// Copy the record data, starting after the header, into or out of the chunks
+	private void copyData(int head, int from, byte[] bytes, boolean write) {
+		int chunk = head;
+		int offset = HEAD_DATA + from;
+		// A full chunk is left to the copy loop, the next one may not exist yet
+		while (offset > CHUNK_SIZE) {
+			chunk = getInt(chunk, NEXT_CHUNK);
+			offset = offset - CHUNK_SIZE + DATA;
+		}
+		int position = 0;
+		while (position < bytes.length) {
+			if (offset == CHUNK_SIZE) {
+				int next = getInt(chunk, NEXT_CHUNK);
+				if (write) {
+					next = allocateChunk();
+					setInt(chunk, NEXT_CHUNK, next);
+					setInt(next, NEXT_CHUNK, NIL);
+				}
+				chunk = next;
+				offset = DATA;
+			}
+			int length = Math.min(CHUNK_SIZE - offset, bytes.length - position);
+			ByteBuffer page = page(chunk);
+			// Positioning the shared page is safe, every access holds the engine monitor
+			page.position(base(chunk) + offset);
+			if (write) {
+				page.put(bytes, position, length);
+			} else {
+				page.get(bytes, position, length);
+			}
+			position += length;
+			offset += length;
+		}
+	}
+
+	private byte[] readKey(int head) {
+		byte[] bytes = new byte[getInt(head, KEY_LENGTH)];
+		copyData(head, 0, bytes, false);
+		return bytes;
+	}
+
+	private byte[] readValue(int head) {
+		byte[] bytes = new byte[getInt(head, VALUE_LENGTH)];
+		copyData(head, getInt(head, KEY_LENGTH), bytes, false);
+		return bytes;
+	}
+
+	private int findRecord(byte[] keyBytes, int hash) {
+		int chunk = buckets[bucketOf(hash)];
+		while (chunk != NIL) {
+			if (getInt(chunk, HASH) == hash && getInt(chunk, KEY_LENGTH) == keyBytes.length
+					&& Arrays.equals(readKey(chunk), keyBytes)) {
+				return chunk;
+			}
+			chunk = getInt(chunk, BUCKET_NEXT);
+		}
+		return NIL;
+	}
+
+	private int writeRecord(byte[] keyBytes, byte[] valueBytes, int hash) {
+		int head = allocateChunk();
+		setInt(head, NEXT_CHUNK, NIL);
+		setInt(head, HASH, hash);
+		setInt(head, KEY_LENGTH, keyBytes.length);
+		setInt(head, VALUE_LENGTH, valueBytes.length);
+		copyData(head, 0, keyBytes, true);
+		copyData(head, keyBytes.length, valueBytes, true);
+		// Link into the hash chain
+		int bucket = bucketOf(hash);
+		setInt(head, BUCKET_NEXT, buckets[bucket]);
+		buckets[bucket] = head;
+		// Link as the most recently used record
+		setInt(head, LRU_PREV, NIL);
+		setInt(head, LRU_NEXT, mruChunk);
+		if (mruChunk == NIL) {
+			lruChunk = head;
+		} else {
+			setInt(mruChunk, LRU_PREV, head);
+		}
+		mruChunk = head;
+		++size;
+		return head;
+	}
+
+	private void unlinkFromLru(int head) {
+		int prev = getInt(head, LRU_PREV);
+		int next = getInt(head, LRU_NEXT);
+		if (prev == NIL) {
+			mruChunk = next;
+		} else {
+			setInt(prev, LRU_NEXT, next);
+		}
+		if (next == NIL) {
+			lruChunk = prev;
+		} else {
+			setInt(next, LRU_PREV, prev);
+		}
+	}
+
+	private void removeRecord(int head) {
+		int bucket = bucketOf(getInt(head, HASH));
+		if (buckets[bucket] == head) {
+			buckets[bucket] = getInt(head, BUCKET_NEXT);
+		} else {
+			int chunk = buckets[bucket];
+			while (getInt(chunk, BUCKET_NEXT) != head) {
+				chunk = getInt(chunk, BUCKET_NEXT);
+			}
+			setInt(chunk, BUCKET_NEXT, getInt(head, BUCKET_NEXT));
+		}
+		unlinkFromLru(head);
+		freeChunks(head);
+		--size;
+	}
+
+	private void moveToMru(int head) {
+		if (head == mruChunk) {
+			return;
+		}
+		unlinkFromLru(head);
+		setInt(head, LRU_PREV, NIL);
+		setInt(head, LRU_NEXT, mruChunk);
+		setInt(mruChunk, LRU_PREV, head);
+		mruChunk = head;
+	}
+
+	@Override
+	public synchronized void createPair(K key, V value) {
+		evictedPair = null;
+		byte[] keyBytes = keySerializer.serialize(key);
+		byte[] valueBytes = valueSerializer.serialize(value);
+		int hash = hash(keyBytes);
+		int head = findRecord(keyBytes, hash);
+		if (head != NIL) {
+			// Rewrite the record of an existing key
+			removeRecord(head);
+		} else if (size == capacity) {
+			int victim = lruChunk;
+			evictedPair = new AbstractMap.SimpleEntry<>(
+					keySerializer.deserialize(readKey(victim)), valueSerializer.deserialize(readValue(victim)));
+			removeRecord(victim);
+		}
+		writeRecord(keyBytes, valueBytes, hash);
+	}
+
+	@Override
+	public synchronized List<Map.Entry<K, V>> createPairs(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		return StorageEngine.super.createPairs(entries);
+	}
+
+	@Override
+	public synchronized Map<K, V> findByKeys(Collection<? extends K> keys) {
+		return StorageEngine.super.findByKeys(keys);
+	}
+
+	@Override
+	public synchronized V findByKey(K key) {
+		byte[] keyBytes = keySerializer.serialize(key);
+		int head = findRecord(keyBytes, hash(keyBytes));
+		if (head == NIL) {
+			return null;
+		}
+		moveToMru(head);
+		return valueSerializer.deserialize(readValue(head));
+	}
+
+	@Override
+	public synchronized V deleteByKey(K key) {
+		byte[] keyBytes = keySerializer.serialize(key);
+		int head = findRecord(keyBytes, hash(keyBytes));
+		if (head == NIL) {
+			return null;
+		}
+		V value = valueSerializer.deserialize(readValue(head));
+		removeRecord(head);
+		return value;
+	}
+
+	@Override
+	public synchronized Map.Entry<K, V> getEvictedKeyIfAny() {
+		return evictedPair;
+	}
+
+	@Override
+	public synchronized void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		for (int head = lruChunk; head != NIL; head = getInt(head, LRU_PREV)) {
+			visitor.visit(keySerializer.deserialize(readKey(head)), valueSerializer.deserialize(readValue(head)), 0);
+		}
+	}
+
+	@Override
+	public synchronized Map<K, V> getSnapShort() {
+		Map<K, V> snapshotMap = new HashMap<>(size);
+		for (int head = mruChunk; head != NIL; head = getInt(head, LRU_NEXT)) {
+			snapshotMap.put(keySerializer.deserialize(readKey(head)), valueSerializer.deserialize(readValue(head)));
+		}
+		return snapshotMap;
+	}
+
+	@Override
+	public synchronized long getWeight() {
+		return size;
+	}
+
+	@Override
+	public synchronized void close() {
+		// Direct memory is returned once the pages are collected
+		pages.clear();
+		Arrays.fill(buckets, NIL);
+		freeChunk = mruChunk = lruChunk = NIL;
+		allocatedChunks = size = 0;
+	}
+
+	/**
+	 * Returns the number of bytes of direct memory reserved by this engine.
+	 */
+	public synchronized long getOffHeapBytes() {
+		return (long) pages.size() * CHUNKS_PER_PAGE * CHUNK_SIZE;
+	}
+}
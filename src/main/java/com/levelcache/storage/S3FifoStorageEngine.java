@@ -0,0 +1,239 @@
+package com.levelcache.storage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.levelcache.policy.S3FifoCacheEntry;
+
+/**
+ * S3-FIFO storage engine, whose hits never take a lock.
+ * <p>
+ * Entries are kept in two FIFO queues: a small one holding 10% of the budget,
+ * where new keys land, and a main one. A hit only bumps a small saturating
+ * counter on the entry, with a plain volatile write, and lookups go straight to
+ * a {@link ConcurrentHashMap}, so reads never touch the queues nor the engine
+ * monitor. All the reordering happens at eviction, under the monitor: the
+ * oldest entry of the small queue moves to the main queue if it was read since
+ * its insertion, or is evicted and its key remembered in a ghost queue; the
+ * oldest entry of the main queue is evicted unless it was read, in which case
+ * it is reinserted with its counter decremented. Keys found in the ghost queue
+ * when written again go straight to the main queue.
+ * </p>
+ * <p>
+ * One-hit keys thus leave quickly through the small queue, while the frequently
+ * read ones circulate in the main queue.
+ * </p>
+ * <p>
+ * A snapshot keeps both queues in order along with the counters, an entry of the
+ * main queue being visited with its counter plus {@value #MAIN_QUEUE}. The ghost
+ * queue holds no values and starts afresh after a restore.
+ * </p>
+ */
+public class S3FifoStorageEngine<K, V> extends AbstractStorageEngine<K, V, S3FifoCacheEntry<K, V>> {
+
+	private static final int SMALL_PERCENT = 10;
+	// Added to the counter of the entries of the main queue when visited
+	private static final int MAIN_QUEUE = S3FifoCacheEntry.MAX_FREQUENCY + 1;
+
+	// Sentinels of the circular queues, their next entry is the oldest
+	private final S3FifoCacheEntry<K, V> small;
+	private final S3FifoCacheEntry<K, V> main;
+	// Keys recently evicted from the small queue, from the oldest
+	private final LinkedHashSet<K> ghost;
+	private final long maxSmallWeight;
+	private long smallWeight;
+
+	public S3FifoStorageEngine(int capacity) {
+		super(capacity);
+		this.small = new S3FifoCacheEntry<>(null, null);
+		this.main = new S3FifoCacheEntry<>(null, null);
+		this.ghost = new LinkedHashSet<>();
+		this.maxSmallWeight = Math.max(1, maxWeight * SMALL_PERCENT / 100);
+	}
+
+	public S3FifoStorageEngine(long maxWeight, Weigher<? super K, ? super V> weigher) {
+		super(maxWeight, weigher);
+		this.small = new S3FifoCacheEntry<>(null, null);
+		this.main = new S3FifoCacheEntry<>(null, null);
+		this.ghost = new LinkedHashSet<>();
+		this.maxSmallWeight = Math.max(1, maxWeight * SMALL_PERCENT / 100);
+	}
+
+	@Override
+	protected ConcurrentMap<K, S3FifoCacheEntry<K, V>> createCacheMap() {
+		return new ConcurrentHashMap<>(capacity);
+	}
+
+	@Override
+	public V findByKey(K key) {
+		S3FifoCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry == null) {
+			return null;
+		}
+		entry.touch();
+		return entry.value;
+	}
+
+	@Override
+	public Map<K, V> findByKeys(Collection<? extends K> keys) {
+		// Hits stay lock-free, each one is recorded like a single read
+		Map<K, V> found = new HashMap<>(keys.size());
+		for (K key : keys) {
+			V value = findByKey(key);
+			if (value != null) {
+				found.put(key, value);
+			}
+		}
+		return found;
+	}
+
+	@Override
+	protected void writePair(K key, V value) {
+		int entryWeight = weigh(key, value);
+		S3FifoCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry != null) {
+			// Update the value for existing key, a write counts as a hit
+			weight += entryWeight - entry.weight;
+			if (!entry.main) {
+				smallWeight += entryWeight - entry.weight;
+			}
+			entry.value = value;
+			entry.weight = entryWeight;
+			entry.touch();
+			while (weight > maxWeight) {
+				evict();
+			}
+			return;
+		}
+		if (entryWeight > maxWeight) {
+			// Can never fit, pass it straight down
+			recordEviction(key, value);
+			return;
+		}
+		while (weight + entryWeight > maxWeight) {
+			evict();
+		}
+		// Add new key-value pair to the cache, keys evicted recently are known to come back
+		S3FifoCacheEntry<K, V> newEntry = new S3FifoCacheEntry<>(key, value);
+		newEntry.weight = entryWeight;
+		if (ghost.remove(key)) {
+			newEntry.main = true;
+			newEntry.linkBefore(main);
+		} else {
+			newEntry.linkBefore(small);
+			smallWeight += entryWeight;
+		}
+		cacheMap.put(key, newEntry);
+		++size;
+		weight += entryWeight;
+	}
+
+	// Evict a single entry, reordering the queues on the way
+	private void evict() {
+		while (true) {
+			if (small.next != small && (smallWeight >= maxSmallWeight || main.next == main)) {
+				S3FifoCacheEntry<K, V> oldest = small.next;
+				oldest.unlink();
+				smallWeight -= oldest.weight;
+				if (oldest.frequency > 0) {
+					// Read while in the small queue, worth keeping
+					oldest.frequency = 0;
+					oldest.main = true;
+					oldest.linkBefore(main);
+					continue;
+				}
+				rememberGhost(oldest.key);
+				remove(oldest);
+				return;
+			}
+			S3FifoCacheEntry<K, V> oldest = main.next;
+			oldest.unlink();
+			int frequency = oldest.frequency;
+			if (frequency > 0) {
+				// Give it another round, with one hit less
+				oldest.frequency = frequency - 1;
+				oldest.linkBefore(main);
+				continue;
+			}
+			remove(oldest);
+			return;
+		}
+	}
+
+	// Remember the key, forgetting the oldest ones past as many keys as the engine holds
+	private void rememberGhost(K key) {
+		ghost.add(key);
+		int limit = Math.max(capacity, size);
+		Iterator<K> iterator = ghost.iterator();
+		while (ghost.size() > limit) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	// Drop an unlinked entry from the engine and record it as evicted
+	private void remove(S3FifoCacheEntry<K, V> entry) {
+		cacheMap.remove(entry.key);
+		--size;
+		weight -= entry.weight;
+		recordEviction(entry.key, entry.value);
+	}
+
+	@Override
+	public synchronized void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		for (S3FifoCacheEntry<K, V> entry = small.next; entry != small; entry = entry.next) {
+			visitor.visit(entry.key, entry.value, entry.frequency);
+		}
+		for (S3FifoCacheEntry<K, V> entry = main.next; entry != main; entry = entry.next) {
+			visitor.visit(entry.key, entry.value, MAIN_QUEUE + entry.frequency);
+		}
+	}
+
+	@Override
+	public synchronized void restorePair(K key, V value, int frequency) {
+		clearEvictions();
+		int entryWeight = weigh(key, value);
+		if (entryWeight > maxWeight || cacheMap.containsKey(key)) {
+			writePair(key, value);
+			return;
+		}
+		while (weight + entryWeight > maxWeight) {
+			evict();
+		}
+		// Back to the newest end of its queue, with its counter
+		S3FifoCacheEntry<K, V> entry = new S3FifoCacheEntry<>(key, value);
+		entry.weight = entryWeight;
+		entry.main = frequency >= MAIN_QUEUE;
+		entry.frequency = Math.max(0, Math.min(entry.main ? frequency - MAIN_QUEUE : frequency,
+				S3FifoCacheEntry.MAX_FREQUENCY));
+		if (entry.main) {
+			entry.linkBefore(main);
+		} else {
+			entry.linkBefore(small);
+			smallWeight += entryWeight;
+		}
+		cacheMap.put(key, entry);
+		++size;
+		weight += entryWeight;
+	}
+
+	@Override
+	public synchronized V deleteByKey(K key) {
+		S3FifoCacheEntry<K, V> entry = cacheMap.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		entry.unlink();
+		if (!entry.main) {
+			smallWeight -= entry.weight;
+		}
+		--size;
+		weight -= entry.weight;
+		return entry.value;
+	}
+}
@@ -1,13 +1,23 @@
 package com.levelcache.storage;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
 
 /**
  * Interface for the storage engine used in a caching system.
  * The StorageEngine provides mechanisms to store, retrieve, and manage 
  * key-value pairs, as well as handle evictions and cache snapshots.
+ *
+ * @param <K> the type of keys maintained by the engine
+ * @param <V> the type of cached values
  */
-public interface StorageEngine {
+public interface StorageEngine<K, V> {
 
     /**
      * Creates and stores a new key-value pair in the cache.
@@ -17,7 +27,30 @@ public interface StorageEngine {
      * @param key   the key to be stored
      * @param value the value associated with the key
      */
-    public void createPair(String key, String value);
+    public void createPair(K key, V value);
+
+    /**
+     * Stores a batch of key-value pairs in the cache, in iteration order.
+     * Engines override this to take their lock once for the whole batch.
+     *
+     * @param entries the key-value pairs to be stored
+     * @return every entry evicted while storing the batch, in eviction order,
+     *         which may include entries of the batch itself. A key evicted and
+     *         then written again by the batch is left out, its copy is stale.
+     */
+    public default List<Map.Entry<K, V>> createPairs(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+        Map<K, Map.Entry<K, V>> evicted = new LinkedHashMap<>();
+        for (Map.Entry<? extends K, ? extends V> entry : entries) {
+            evicted.remove(entry.getKey());
+            createPair(entry.getKey(), entry.getValue());
+            for (Map.Entry<K, V> evictedPair : getEvictedEntries()) {
+                // Only the last eviction of a key carries its latest value
+                evicted.remove(evictedPair.getKey());
+                evicted.put(evictedPair.getKey(), evictedPair);
+            }
+        }
+        return new ArrayList<>(evicted.values());
+    }
 
     /**
      * Finds and retrieves the value associated with the given key.
@@ -26,7 +59,35 @@ public interface StorageEngine {
      * @param key the key to be searched in the cache
      * @return the value associated with the key, or null if not found
      */
-    public String findByKey(String key);
+    public V findByKey(K key);
+
+    /**
+     * Finds and retrieves the values of a group of keys, each found key counting
+     * as an access for the eviction policy. Engines override this to take their
+     * lock once for the whole group.
+     *
+     * @param keys the keys to be searched in the cache
+     * @return the found keys with their values, missing keys are left out
+     */
+    public default Map<K, V> findByKeys(Collection<? extends K> keys) {
+        Map<K, V> found = new HashMap<>(keys.size());
+        for (K key : keys) {
+            V value = findByKey(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Removes the key and its associated value from the cache, if present.
+     * Removing a key does not count as an eviction.
+     *
+     * @param key the key to be removed from the cache
+     * @return the value that was associated with the key, or null if not found
+     */
+    public V deleteByKey(K key);
 
     /**
      * Retrieves the key-value pair that was evicted from the cache, if any.
@@ -36,7 +97,26 @@ public interface StorageEngine {
      * @return a Map.Entry containing the evicted key and its associated value,
      *         or null if no eviction occurred
      */
-    public Map.Entry<String, String> getEvictedKeyIfAny();
+    public Map.Entry<K, V> getEvictedKeyIfAny();
+
+    /**
+     * Retrieves every key-value pair evicted by the last write. A single write
+     * may evict several entries when the capacity of the engine is a weight.
+     *
+     * @return the evicted entries in eviction order, empty if no eviction occurred
+     */
+    public default List<Map.Entry<K, V>> getEvictedEntries() {
+        Map.Entry<K, V> evicted = getEvictedKeyIfAny();
+        return evicted == null ? Collections.emptyList() : Collections.singletonList(evicted);
+    }
+
+    /**
+     * Returns the current weight of the cache, which is the number of entries
+     * unless the engine was created with a weigher.
+     *
+     * @return the total weight of the entries currently stored
+     */
+    public long getWeight();
 
     /**
      * Returns a snapshot of the current cache state.
@@ -45,5 +125,51 @@ public interface StorageEngine {
      *
      * @return a Map containing all key-value pairs currently in the cache
      */
-    public Map<String, String> getSnapShort();
+    public Map<K, V> getSnapShort();
+
+    /**
+     * Returns a weakly consistent spliterator over the entries of the engine. It
+     * holds no lock across the traversal, never throws
+     * {@link java.util.ConcurrentModificationException}, and may or may not
+     * reflect the writes made while it runs. Engines that cannot be traversed
+     * concurrently with their writers split a copy made by {@link #getSnapShort()}.
+     *
+     * @return a spliterator over the entries currently stored
+     */
+    public default Spliterator<Map.Entry<K, V>> spliterator() {
+        return getSnapShort().entrySet().spliterator();
+    }
+
+    /**
+     * Hands every entry to the visitor, from the next one to be evicted to the
+     * last one. Replaying the entries in this order with
+     * {@link #restorePair(Object, Object, int)} into an empty engine of the same
+     * policy rebuilds the same eviction order. Engines that keep no such order
+     * visit their entries in no particular order.
+     *
+     * @param visitor the visitor receiving the entries
+     */
+    public default void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+        getSnapShort().forEach((key, value) -> visitor.visit(key, value, 0));
+    }
+
+    /**
+     * Stores an entry read back from a snapshot, as the last one to be evicted
+     * of its queue, with the frequency it was visited with. Engines that do not
+     * count accesses ignore the frequency.
+     *
+     * @param key       the key to be stored
+     * @param value     the value associated with the key
+     * @param frequency the frequency the entry was visited with
+     */
+    public default void restorePair(K key, V value, int frequency) {
+        createPair(key, value);
+    }
+
+    /**
+     * Releases the resources the engine holds outside of the Java heap, such as
+     * direct memory or files. The engine must not be used afterwards.
+     */
+    public default void close() {
+    }
 }
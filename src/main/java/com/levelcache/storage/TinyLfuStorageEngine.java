@@ -0,0 +1,277 @@
+package com.levelcache.storage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.levelcache.policy.FrequencySketch;
+import com.levelcache.policy.TinyLfuCacheEntry;
+
+/**
+ * Window TinyLFU storage engine.
+ * <p>
+ * New entries land in a small LRU admission window holding 1% of the budget,
+ * so that bursts of recent keys still get a chance to be hit. Entries pushed
+ * out of the window become candidates for the main region, a segmented LRU
+ * split into a probation queue and a protected queue holding 80% of the main
+ * region. A candidate is only admitted if a {@link FrequencySketch} estimates it
+ * more popular than the probation victim it would replace; otherwise the
+ * candidate itself is the one evicted. Keys seen once thus leave the level
+ * straight from the window without displacing frequently used ones.
+ * </p>
+ * <p>
+ * A hit in probation moves the entry to the protected queue, whose overflow is
+ * demoted back to probation. Every write and hit is counted in the sketch,
+ * which ages its counters periodically to follow changes in popularity.
+ * </p>
+ * <p>
+ * A snapshot keeps the three queues in order and the estimated frequency of
+ * each entry, visited as the frequency times four plus its queue. A restore
+ * counts the frequency back into the sketch and puts the entry back in its queue.
+ * </p>
+ */
+public class TinyLfuStorageEngine<K, V> extends AbstractStorageEngine<K, V, TinyLfuCacheEntry<K, V>> {
+
+	private static final int WINDOW_PERCENT = 1;
+	private static final int PROTECTED_PERCENT = 80;
+	// The sketch counts up to 15, the queue of a visited entry takes the two low bits
+	private static final int MAX_FREQUENCY = 15;
+	private static final int QUEUE_BITS = 2;
+
+	private final FrequencySketch sketch;
+	// Sentinels of the circular queues, their next entry is the least recently used
+	private final TinyLfuCacheEntry<K, V> window;
+	private final TinyLfuCacheEntry<K, V> probation;
+	private final TinyLfuCacheEntry<K, V> protectedQueue;
+	private final long maxWindowWeight;
+	private final long maxMainWeight;
+	private final long maxProtectedWeight;
+	private long windowWeight;
+	private long protectedWeight;
+
+	public TinyLfuStorageEngine(int capacity) {
+		super(capacity);
+		this.sketch = new FrequencySketch(capacity);
+		this.window = new TinyLfuCacheEntry<>(null, null);
+		this.probation = new TinyLfuCacheEntry<>(null, null);
+		this.protectedQueue = new TinyLfuCacheEntry<>(null, null);
+		this.maxMainWeight = maxWeight - Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+		this.maxWindowWeight = maxWeight - maxMainWeight;
+		this.maxProtectedWeight = maxMainWeight * PROTECTED_PERCENT / 100;
+	}
+
+	public TinyLfuStorageEngine(long maxWeight, Weigher<? super K, ? super V> weigher) {
+		super(maxWeight, weigher);
+		// Sized from the number of entries as it grows, the budget is not a count
+		this.sketch = new FrequencySketch(capacity);
+		this.window = new TinyLfuCacheEntry<>(null, null);
+		this.probation = new TinyLfuCacheEntry<>(null, null);
+		this.protectedQueue = new TinyLfuCacheEntry<>(null, null);
+		this.maxMainWeight = maxWeight - Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+		this.maxWindowWeight = maxWeight - maxMainWeight;
+		this.maxProtectedWeight = maxMainWeight * PROTECTED_PERCENT / 100;
+	}
+
+	@Override
+	protected ConcurrentMap<K, TinyLfuCacheEntry<K, V>> createCacheMap() {
+		return new ConcurrentHashMap<>(capacity);
+	}
+
+	@Override
+	protected void writePair(K key, V value) {
+		sketch.increment(key);
+		int entryWeight = weigh(key, value);
+		TinyLfuCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry != null) {
+			// Update the value for existing key
+			addWeight(entry, entryWeight - entry.weight);
+			entry.value = value;
+			entry.weight = entryWeight;
+			onHit(entry);
+			evictFromWindow();
+			evictFromMain();
+			return;
+		}
+		if (entryWeight > maxWeight) {
+			// Can never fit, pass it straight down
+			recordEviction(key, value);
+			return;
+		}
+		// Add new key-value pair to the admission window
+		TinyLfuCacheEntry<K, V> newEntry = new TinyLfuCacheEntry<>(key, value);
+		newEntry.weight = entryWeight;
+		newEntry.queue = TinyLfuCacheEntry.WINDOW;
+		newEntry.linkBefore(window);
+		cacheMap.put(key, newEntry);
+		++size;
+		weight += entryWeight;
+		windowWeight += entryWeight;
+		if (size > capacity) {
+			sketch.ensureCapacity(size);
+		}
+		evictFromWindow();
+	}
+
+	// Account a change of weight of the entry to its queue
+	private void addWeight(TinyLfuCacheEntry<K, V> entry, long delta) {
+		weight += delta;
+		if (entry.queue == TinyLfuCacheEntry.WINDOW) {
+			windowWeight += delta;
+		} else if (entry.queue == TinyLfuCacheEntry.PROTECTED) {
+			protectedWeight += delta;
+		}
+	}
+
+	private void onHit(TinyLfuCacheEntry<K, V> entry) {
+		entry.unlink();
+		if (entry.queue == TinyLfuCacheEntry.WINDOW) {
+			entry.linkBefore(window);
+		} else if (entry.queue == TinyLfuCacheEntry.PROBATION) {
+			// Used again while on probation, protect it
+			entry.queue = TinyLfuCacheEntry.PROTECTED;
+			entry.linkBefore(protectedQueue);
+			protectedWeight += entry.weight;
+			while (protectedWeight > maxProtectedWeight && protectedQueue.next != entry) {
+				TinyLfuCacheEntry<K, V> demoted = protectedQueue.next;
+				demoted.unlink();
+				demoted.queue = TinyLfuCacheEntry.PROBATION;
+				demoted.linkBefore(probation);
+				protectedWeight -= demoted.weight;
+			}
+		} else {
+			entry.linkBefore(protectedQueue);
+		}
+	}
+
+	// Turn the overflow of the window into candidates for the main region
+	private void evictFromWindow() {
+		while (windowWeight > maxWindowWeight) {
+			TinyLfuCacheEntry<K, V> candidate = window.next;
+			candidate.unlink();
+			windowWeight -= candidate.weight;
+			admit(candidate);
+		}
+	}
+
+	// Make room in the main region for the candidate, as long as it is more
+	// popular than each victim, or evict the candidate itself
+	private void admit(TinyLfuCacheEntry<K, V> candidate) {
+		if (candidate.weight > maxMainWeight) {
+			remove(candidate);
+			return;
+		}
+		int candidateFrequency = sketch.frequency(candidate.key);
+		// The candidate already counts towards the main region
+		while (mainWeight() > maxMainWeight) {
+			TinyLfuCacheEntry<K, V> victim = mainVictim();
+			if (victim == null || sketch.frequency(victim.key) >= candidateFrequency) {
+				remove(candidate);
+				return;
+			}
+			victim.unlink();
+			if (victim.queue == TinyLfuCacheEntry.PROTECTED) {
+				protectedWeight -= victim.weight;
+			}
+			remove(victim);
+		}
+		candidate.queue = TinyLfuCacheEntry.PROBATION;
+		candidate.linkBefore(probation);
+	}
+
+	// Shrink the main region back to its budget after an entry grew
+	private void evictFromMain() {
+		while (mainWeight() > maxMainWeight) {
+			TinyLfuCacheEntry<K, V> victim = mainVictim();
+			victim.unlink();
+			if (victim.queue == TinyLfuCacheEntry.PROTECTED) {
+				protectedWeight -= victim.weight;
+			}
+			remove(victim);
+		}
+	}
+
+	private long mainWeight() {
+		return weight - windowWeight;
+	}
+
+	private TinyLfuCacheEntry<K, V> mainVictim() {
+		if (probation.next != probation) {
+			return probation.next;
+		}
+		return protectedQueue.next != protectedQueue ? protectedQueue.next : null;
+	}
+
+	// Drop an unlinked entry from the engine and record it as evicted
+	private void remove(TinyLfuCacheEntry<K, V> entry) {
+		cacheMap.remove(entry.key);
+		--size;
+		weight -= entry.weight;
+		recordEviction(entry.key, entry.value);
+	}
+
+	@Override
+	public synchronized V findByKey(K key) {
+		TinyLfuCacheEntry<K, V> entry = cacheMap.get(key);
+		if (entry == null) {
+			return null;
+		}
+		sketch.increment(key);
+		onHit(entry);
+		return entry.value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public synchronized void forEachInEvictionOrder(EntryVisitor<? super K, ? super V> visitor) {
+		for (TinyLfuCacheEntry<K, V> queue : new TinyLfuCacheEntry[] { probation, protectedQueue, window }) {
+			for (TinyLfuCacheEntry<K, V> entry = queue.next; entry != queue; entry = entry.next) {
+				visitor.visit(entry.key, entry.value, (sketch.frequency(entry.key) << QUEUE_BITS) | entry.queue);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void restorePair(K key, V value, int frequency) {
+		clearEvictions();
+		int queue = frequency & ((1 << QUEUE_BITS) - 1);
+		int entryWeight = weigh(key, value);
+		// Through the window like a new write, which counts once in the sketch itself
+		boolean write = queue == TinyLfuCacheEntry.WINDOW || queue > TinyLfuCacheEntry.PROTECTED
+				|| cacheMap.containsKey(key) || mainWeight() + entryWeight > maxMainWeight;
+		int count = Math.min(frequency >>> QUEUE_BITS, MAX_FREQUENCY) - (write ? 1 : 0);
+		for (int i = sketch.frequency(key); i < count; i++) {
+			sketch.increment(key);
+		}
+		if (write) {
+			writePair(key, value);
+			return;
+		}
+		TinyLfuCacheEntry<K, V> entry = new TinyLfuCacheEntry<>(key, value);
+		entry.weight = entryWeight;
+		if (queue == TinyLfuCacheEntry.PROTECTED && protectedWeight + entryWeight <= maxProtectedWeight) {
+			entry.queue = TinyLfuCacheEntry.PROTECTED;
+			entry.linkBefore(protectedQueue);
+			protectedWeight += entryWeight;
+		} else {
+			entry.queue = TinyLfuCacheEntry.PROBATION;
+			entry.linkBefore(probation);
+		}
+		cacheMap.put(key, entry);
+		++size;
+		weight += entryWeight;
+		if (size > capacity) {
+			sketch.ensureCapacity(size);
+		}
+	}
+
+	@Override
+	public synchronized V deleteByKey(K key) {
+		TinyLfuCacheEntry<K, V> entry = cacheMap.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		entry.unlink();
+		--size;
+		addWeight(entry, -entry.weight);
+		return entry.value;
+	}
+}
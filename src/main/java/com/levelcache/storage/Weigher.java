@@ -0,0 +1,23 @@
+package com.levelcache.storage;
+
+/**
+ * Calculates the weight of cache entries, for the levels whose capacity is
+ * expressed as a total weight (typically bytes) rather than a number of entries.
+ * The weight of an entry is computed when it is written and is not re-evaluated
+ * until the entry is written again.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public interface Weigher<K, V> {
+
+    /**
+     * Returns the weight of the entry. The weight is relative to the budget of
+     * the level and must be positive.
+     *
+     * @param key   the key of the entry
+     * @param value the value of the entry
+     * @return the weight of the entry
+     */
+    public int weigh(K key, V value);
+}
@@ -0,0 +1,88 @@
+package com.levelcache.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy, bounded, multiple-producer / single-consumer buffer.
+ * <p>
+ * Producers record elements with a single CAS and never block: when the buffer
+ * is full, or another producer wins the race for the same slot, the element is
+ * simply dropped. The consumer drains the buffer while holding an external lock,
+ * which makes it suitable for recording cache hits whose side effects (reordering,
+ * promotion) can be applied in batches and tolerate losing a few samples.
+ * </p>
+ *
+ * @param <E> the type of the buffered elements
+ */
+public final class ReadBuffer<E> {
+
+	private final int mask;
+	private final AtomicReferenceArray<E> buffer;
+	private final AtomicLong writeCounter;
+	// Only advanced by the draining thread
+	private final AtomicLong readCounter;
+
+	/**
+	 * @param capacity the maximum number of pending elements, rounded up to a power of two
+	 */
+	public ReadBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = size - 1;
+		this.buffer = new AtomicReferenceArray<>(size);
+		this.writeCounter = new AtomicLong();
+		this.readCounter = new AtomicLong();
+	}
+
+	/**
+	 * Records the element if there is room for it.
+	 *
+	 * @param e the element to record
+	 * @return {@code false} if the element was dropped because the buffer is full
+	 *         or contended, {@code true} otherwise
+	 */
+	public boolean offer(E e) {
+		long head = readCounter.get();
+		long tail = writeCounter.get();
+		if (tail - head > mask) {
+			return false;
+		}
+		if (writeCounter.compareAndSet(tail, tail + 1)) {
+			buffer.lazySet((int) (tail & mask), e);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the approximate number of pending elements.
+	 */
+	public int size() {
+		return (int) (writeCounter.get() - readCounter.get());
+	}
+
+	/**
+	 * Hands every published element to the consumer. Must only be called by one
+	 * thread at a time, typically while holding the lock that guards the data the
+	 * consumer updates.
+	 *
+	 * @param consumer the action applied to each drained element
+	 */
+	public void drainTo(Consumer<E> consumer) {
+		long head = readCounter.get();
+		long tail = writeCounter.get();
+		while (head < tail) {
+			int index = (int) (head & mask);
+			E e = buffer.get(index);
+			if (e == null) {
+				// The producer has claimed the slot but not yet published it
+				break;
+			}
+			buffer.lazySet(index, null);
+			consumer.accept(e);
+			head++;
+		}
+		readCounter.lazySet(head);
+	}
+}
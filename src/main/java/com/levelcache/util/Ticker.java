@@ -0,0 +1,21 @@
+package com.levelcache.util;
+
+/**
+ * Source of the time used to expire entries, in nanoseconds from an arbitrary
+ * origin. Replacing it lets tests control the passage of time.
+ */
+@FunctionalInterface
+public interface Ticker {
+
+	/**
+	 * Returns the current time, in nanoseconds.
+	 */
+	public long read();
+
+	/**
+	 * Returns the ticker reading {@link System#nanoTime()}.
+	 */
+	public static Ticker systemTicker() {
+		return System::nanoTime;
+	}
+}
@@ -5,24 +5,46 @@ import org.junit.Before;
 import org.junit.After;
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import com.levelcache.config.CacheConfiguration;
 import com.levelcache.config.ConfigurationBuilder;
+import com.levelcache.config.DefaultConfigBuilder;
 import com.levelcache.factory.CacheFactory;
+import com.levelcache.core.Expiration;
+import com.levelcache.core.HierarchyMode;
 import com.levelcache.core.LevelCache;
+import com.levelcache.core.LevelEntry;
 import com.levelcache.exception.CacheBulkReadingException;
 import com.levelcache.exception.CacheBulkWritingException;
 import com.levelcache.exception.CacheInitializationException;
 import com.levelcache.exception.CacheReadingException;
+import com.levelcache.exception.CacheSnapshotException;
 import com.levelcache.exception.CacheWritingException;
 import com.levelcache.exception.LevelCreationException;
 import com.levelcache.exception.LevelOutOfBoundException;
 import com.levelcache.exception.LevelRemoveException;
+import com.levelcache.factory.Status;
+import com.levelcache.stats.CacheStatistics;
+import com.levelcache.stats.CacheStats;
 
 
 /**
@@ -30,7 +52,7 @@ import com.levelcache.exception.LevelRemoveException;
  */
 public class LevelCacheTest {
 	
-	private LevelCache cache;
+	private LevelCache<String, String> cache;
 	
 	@Before
 	public void setUp() throws CacheInitializationException {
@@ -49,6 +71,17 @@ public class LevelCacheTest {
 		cache.clear();
 	}
 	
+	// A cache of strings with room for ten levels, the customizer sets the rest
+	private static LevelCache<String, String> newCache(String name, UnaryOperator<ConfigurationBuilder> customizer)
+			throws CacheInitializationException {
+		ConfigurationBuilder builder = new ConfigurationBuilder()
+				.setCacheName(name)
+				.setMaxCacheLevels(10)
+				.setKeyType(String.class)
+				.setValueType(String.class);
+		return CacheFactory.createCache(customizer.apply(builder).build());
+	}
+	
 	
 	private void addCacheLevels(int nums, int size, String policy) {
 		for(int i=1; i<=nums; i++) {
@@ -68,9 +101,10 @@ public class LevelCacheTest {
 		assertEquals(3, cache.getLevelCount());
 		
 		try {
-			cache.removeLevel(1);
-			cache.removeLevel(2);
+			// The levels below a removed one move up, there is no hole left
 			cache.removeLevel(3);
+			cache.removeLevel(1);
+			cache.removeLevel(1);
 		} catch (LevelRemoveException e) {
 			e.printStackTrace();
 		}
@@ -89,6 +123,32 @@ public class LevelCacheTest {
 		assertThrows(LevelCreationException.class, () -> cache.addLevel(0, "LRU"));
 	}
 	
+	@Test
+	public void testLevelSmallerThanSegments() throws Exception {
+		LevelCache<String, String> striped = newCache("test-cache-striped", builder -> builder.setConcurrencyLevel(4).setStripingEnabled(true));
+		// Every segment needs room for an entry, whether the level counts entries or weight
+		assertThrows(LevelCreationException.class, () -> striped.addLevel(3, "LRU"));
+		assertThrows(LevelCreationException.class, () -> striped.addWeightedLevel(3, "LRU"));
+		striped.addLevel(4, "LRU");
+		for (int i = 0; i < 100; i++) {
+			striped.put("key" + i, "value" + i);
+		}
+		assertEquals(4, striped.getLevelWeight(1));
+		assertThrows(LevelCreationException.class, () -> striped.resizeLevel(1, 2));
+		striped.clear();
+		
+		// Without striping the concurrency level leaves the levels whole
+		LevelCache<String, String> unstriped = CacheFactory.createCache(DefaultConfigBuilder.getDefaultConfiguration());
+		unstriped.addLevel(3, "LRU");
+		unstriped.addLevel(2, "LFU");
+		for (int i = 0; i < 5; i++) {
+			unstriped.put("key" + i, "value" + i);
+		}
+		assertEquals(3, unstriped.getLevelWeight(1));
+		assertEquals(2, unstriped.getLevelWeight(2));
+		unstriped.close();
+	}
+
 	@Test
 	public void testRemoveNonExistentLevel() {
 	    assertThrows(LevelRemoveException.class, () -> cache.removeLevel(1));
@@ -141,13 +201,44 @@ public class LevelCacheTest {
 		dataMap.put("123e4567", "12d3-a456-426614174000");
 		
 		cache.putAll(dataMap);
-		List<String> values = cache.getAll(Arrays.asList("103e4567", "113e4567", "123e4567"));
+		Map<String, String> values = cache.getAll(Arrays.asList("103e4567", "113e4567", "123e4567", "133e4567"));
 		
 		// Assertions
 		assertEquals(3, values.size());
-		assertEquals("10d3-a456-426614174000", values.get(0));
-		assertEquals("11d3-a456-426614174000", values.get(1));
-		assertEquals("12d3-a456-426614174000", values.get(2));
+		assertEquals("10d3-a456-426614174000", values.get("103e4567"));
+		assertEquals("11d3-a456-426614174000", values.get("113e4567"));
+		assertEquals("12d3-a456-426614174000", values.get("123e4567"));
+		// Misses are left out rather than mapped to a placeholder
+		assertFalse(values.containsKey("133e4567"));
+	}
+	
+	@Test
+	public void testParallelBulkReadsAcrossLevels() throws Exception {
+		LevelCache<String, String> bulk = newCache("test-cache-bulk", builder -> builder.setConcurrencyLevel(4).setStripingEnabled(true));
+		bulk.addLevel(100, "LRU");
+		bulk.addLevel(200, "LFU");
+		bulk.addLevel(1000, "CONCURRENT_LRU");
+		
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			bulk.put("key" + i, "value" + i);
+			keys.add("key" + i);
+		}
+		keys.add("missing");
+		Map<String, String> values = bulk.getAll(keys);
+		assertEquals(1000, values.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("value" + i, values.get("key" + i));
+		}
+		
+		// Keys read from lower levels are promoted like single reads
+		bulk.cleanUp();
+		String deep = bulk.stream().filter(entry -> entry.getLevel() == 3).findFirst().get().getKey();
+		assertEquals("value" + deep.substring(3), bulk.getAll(Arrays.asList(deep)).get(deep));
+		bulk.cleanUp();
+		assertEquals(Integer.valueOf(1), bulk.stream().filter(entry -> entry.getKey().equals(deep))
+				.map(LevelEntry::getLevel).findFirst().get());
+		bulk.clear();
 	}
 	
 	@Test
@@ -206,4 +297,585 @@ public class LevelCacheTest {
 	    assertEquals(largeVal, cache.get(largeKey));
 	}
 	
-}
\ No newline at end of file
+	@Test
+	public void testPromotionOnRead() {
+		addCacheLevels(2, 2, "LRU");
+		
+		cache.put("1", "1");
+		cache.put("2", "2");
+		cache.put("3", "3");
+		cache.put("4", "4");
+		// L1: {3, 4}, L2: {1, 2}
+		assertEquals("1", cache.get("1"));
+		cache.cleanUp();
+		
+		// "1" is back in L1, so it survives two more insertions
+		cache.put("5", "5");
+		cache.put("6", "6");
+		cache.put("7", "7");
+		assertEquals("1", cache.get("1"));
+		assertNull(cache.get("2"));
+	}
+	
+	@Test
+	public void testCacheConcurrentLruInvalidation() {
+		addCacheLevels(1, 2, "CONCURRENT_LRU");
+		
+		cache.put("120", "120");
+		cache.put("121", "121");
+		assertEquals("120", cache.get("120"));
+		
+		cache.put("122", "122");
+		assertNull(cache.get("121"));
+		assertEquals("120", cache.get("120"));
+		assertEquals("122", cache.get("122"));
+	}
+	
+	@Test
+	public void testCacheLfuFrequencyOrdering() {
+		addCacheLevels(1, 3, "LFU");
+		cache.put("a", "a");
+		cache.put("b", "b");
+		cache.put("c", "c");
+		
+		// a: 3, b: 2, c: 1
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		
+		cache.put("d", "d");
+		assertNull(cache.get("c"));
+		
+		// b and d share frequency 2, b reached it first
+		cache.get("d");
+		cache.put("e", "e");
+		assertNull(cache.get("b"));
+		assertEquals("d", cache.get("d"));
+		assertEquals("a", cache.get("a"));
+	}
+	
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testTypedKeysAndValues() throws Exception {
+		CacheConfiguration config = new ConfigurationBuilder()
+				.setCacheName("test-cache-typed")
+				.setMaxCacheLevels(10)
+				.setKeyType(Long.class)
+				.setValueType(Integer.class)
+				.build();
+		LevelCache<Long, Integer> typed = CacheFactory.createCache(config);
+		typed.addLevel(2, "LRU");
+		typed.addLevel(2, "LFU");
+		
+		for (long id = 1; id <= 4; id++) {
+			typed.put(id, (int) id * 10);
+		}
+		assertEquals(Integer.valueOf(10), typed.get(1L));
+		assertEquals(Integer.valueOf(40), typed.get(4L));
+		
+		// Arguments of the wrong type fail before touching the cache
+		LevelCache raw = typed;
+		assertThrows(CacheWritingException.class, () -> raw.put("1", 10));
+		assertThrows(CacheWritingException.class, () -> raw.put(5L, "50"));
+		assertThrows(CacheReadingException.class, () -> raw.get("1"));
+		assertNull(typed.get(5L));
+	}
+	
+	@Test
+	public void testOffHeapLowerLevel() throws Exception {
+		cache.addLevel(2, "LRU");
+		cache.addLevel(3, "OFF_HEAP");
+		
+		String largeVal = "b".repeat(100000);
+		cache.put("large", largeVal);
+		for (int i = 1; i <= 4; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		// L1: {key3, key4}, L2: {large, key1, key2}
+		assertEquals(largeVal, cache.get("large"));
+		assertEquals("value1", cache.get("key1"));
+		
+		cache.put("key5", "value5");
+		cache.put("key6", "value6");
+		cache.put("key7", "value7");
+		cache.put("key8", "value8");
+		assertNull(cache.get("key2"));
+		assertEquals("value5", cache.get("key5"));
+		assertEquals("value6", cache.get("key6"));
+	}
+	
+	@Test
+	public void testDiskLastLevel() throws Exception {
+		cache.addLevel(2, "LRU");
+		cache.addLevel(100, "DISK");
+		
+		for (int i = 0; i < 50; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		for (int i = 0; i < 50; i++) {
+			assertEquals("value" + i, cache.get("key" + i));
+		}
+	}
+	
+	@Test
+	public void testWeightedLevels() throws Exception {
+		LevelCache<String, String> weighted = newCache("test-cache-weighted",
+				builder -> builder.setWeigher((String key, String value) -> value.length()));
+		weighted.addWeightedLevel(10, "LRU");
+		weighted.addWeightedLevel(20, "LFU");
+		
+		weighted.put("small1", "aa");
+		weighted.put("small2", "bb");
+		weighted.put("medium", "cccccc");
+		assertEquals(10, weighted.getLevelWeight(1));
+		// A single heavy entry pushes several small ones down at once
+		weighted.put("heavy", "dddddddd");
+		assertEquals(8, weighted.getLevelWeight(1));
+		assertEquals(10, weighted.getLevelWeight(2));
+		// An entry heavier than L1 goes straight to L2
+		weighted.put("huge", "eeeeeeeeeeee");
+		assertEquals(20, weighted.getLevelWeight(2));
+		assertNull(weighted.get("small1"));
+		assertEquals("bb", weighted.get("small2"));
+		assertEquals("eeeeeeeeeeee", weighted.get("huge"));
+		assertEquals("dddddddd", weighted.get("heavy"));
+		
+		// An entry weighing nothing would escape the budget, it is rejected before any level changes
+		assertThrows(CacheWritingException.class, () -> weighted.put("heavy", ""));
+		assertThrows(CacheBulkWritingException.class, () -> weighted.putAll(Map.of("small2", "")));
+		assertEquals("dddddddd", weighted.get("heavy"));
+		assertEquals("bb", weighted.get("small2"));
+		weighted.clear();
+	}
+	
+	@Test
+	public void testBatchedPutAllCascade() throws Exception {
+		cache.addLevel(2, "LRU");
+		cache.addLevel(3, "LRU");
+		cache.addLevel(100, "LFU");
+		cache.put("old", "old");
+		
+		// The batch overflows L1 and L2 in one go
+		Map<String, String> dataMap = new HashMap<>();
+		for (int i = 0; i < 20; i++) {
+			dataMap.put("key" + i, "value" + i);
+		}
+		cache.putAll(dataMap);
+		assertEquals(2, cache.getLevelWeight(1));
+		assertEquals(3, cache.getLevelWeight(2));
+		assertEquals(16, cache.getLevelWeight(3));
+		
+		// Writing a key held by a lower level replaces it instead of duplicating it
+		Map<String, String> update = new HashMap<>();
+		update.put("old", "new");
+		cache.putAll(update);
+		assertEquals(16, cache.getLevelWeight(3));
+		assertEquals("new", cache.get("old"));
+		for (int i = 0; i < 20; i++) {
+			assertEquals("value" + i, cache.get("key" + i));
+		}
+	}
+	
+	@Test
+	public void testPutAllRewritingAnEvictedKey() throws Exception {
+		cache.addLevel(2, "LRU");
+		cache.addLevel(4, "LRU");
+		cache.put("X", "old");
+		
+		// A and B push X out of L1 with its old value, then the batch writes X again
+		Map<String, String> batch = new LinkedHashMap<>();
+		batch.put("A", "a");
+		batch.put("B", "b");
+		batch.put("X", "new");
+		cache.putAll(batch);
+		assertEquals(2, cache.getLevelWeight(1));
+		assertEquals(1, cache.getLevelWeight(2));
+		assertEquals("new", cache.get("X"));
+		assertEquals("a", cache.get("A"));
+		assertEquals("b", cache.get("B"));
+	}
+	
+	@Test
+	public void testStatistics() throws Exception {
+		LevelCache<String, String> stats = newCache("test-cache-stats", builder -> builder.setStatisticsEnabled(true));
+		stats.addLevel(2, "LRU");
+		stats.addLevel(2, "LRU");
+		
+		for (int i = 1; i <= 5; i++) {
+			stats.put("key" + i, "value" + i);
+		}
+		// L1: {key4, key5}, L2: {key2, key3}, key1 dropped
+		assertEquals("value5", stats.get("key5"));
+		assertEquals("value2", stats.get("key2"));
+		assertNull(stats.get("key1"));
+		assertEquals("loaded", stats.get("key6", key -> "loaded"));
+		
+		CacheStats snapshot = stats.stats();
+		assertEquals(4, snapshot.getRequestCount());
+		assertEquals(1, snapshot.getHitCount(1));
+		assertEquals(1, snapshot.getHitCount(2));
+		assertEquals(2, snapshot.getMissCount());
+		// Six puts plus key2 promoted back to L1 by the put of key6
+		assertEquals(7, snapshot.getInsertionCount(1));
+		assertEquals(5, snapshot.getDemotionCount(1));
+		assertEquals(2, snapshot.getEvictionCount(2));
+		assertEquals(2, snapshot.getDropCount());
+		assertEquals(1, snapshot.getLoadSuccessCount());
+		
+		// The same counts are published over JMX under the cache name
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = CacheStatistics.objectName("test-cache-stats");
+		assertEquals(4L, server.getAttribute(name, "RequestCount"));
+		assertArrayEquals(new long[] { 1, 1 }, (long[]) server.getAttribute(name, "LevelHitCounts"));
+		server.invoke(name, "resetStatistics", null, null);
+		assertEquals(0, stats.stats().getRequestCount());
+		
+		// The name stays taken until the cache is closed
+		assertThrows(CacheInitializationException.class,
+				() -> newCache("test-cache-stats", builder -> builder.setStatisticsEnabled(true)));
+		stats.close();
+		assertFalse(server.isRegistered(name));
+		newCache("test-cache-stats", builder -> builder.setStatisticsEnabled(true)).close();
+		
+		// Statistics are off by default
+		cache.addLevel(2, "LRU");
+		cache.get("key");
+		assertEquals(0, cache.stats().getRequestCount());
+	}
+	
+	@Test
+	public void testExpiration() throws Exception {
+		AtomicLong time = new AtomicLong();
+		LevelCache<String, String> expiring = newCache("test-cache-expiry", builder -> builder
+				.setExpireAfterWrite(10, TimeUnit.SECONDS).setTicker(time::get).setStatisticsEnabled(true));
+		expiring.addLevel(4, "LRU");
+		expiring.addLevel(4, "LRU");
+		
+		expiring.put("written", "value");
+		expiring.put("accessed", "value", Expiration.afterAccess(3, TimeUnit.SECONDS));
+		expiring.put("forever", "value", Expiration.never());
+		for (int i = 0; i < 4; i++) {
+			expiring.put("key" + i, "value" + i);
+		}
+		// The default and per-entry expiry both hold in the lower level
+		assertEquals(3, expiring.getLevelWeight(2));
+		
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertEquals("value", expiring.get("accessed"));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		// Reads push back the expiry after access
+		assertEquals("value", expiring.get("accessed"));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(4));
+		assertNull(expiring.get("accessed"));
+		assertEquals("value", expiring.get("written"));
+		
+		time.addAndGet(TimeUnit.SECONDS.toNanos(3));
+		assertNull(expiring.get("written"));
+		assertNull(expiring.get("key0"));
+		assertEquals("value", expiring.get("forever"));
+		
+		// Cleaning up reclaims the expired entries from their levels
+		expiring.cleanUp();
+		assertEquals(1, expiring.getLevelWeight(1) + expiring.getLevelWeight(2));
+		// Expired entries are counted apart from the ones dropped off the last level
+		assertEquals(6, expiring.stats().getExpirationCount());
+		assertEquals(0, expiring.stats().getDropCount());
+		
+		// A rewrite restarts the expiry
+		expiring.put("key0", "again");
+		time.addAndGet(TimeUnit.SECONDS.toNanos(9));
+		assertEquals("again", expiring.get("key0"));
+		expiring.close();
+	}
+	
+	@Test
+	public void testInclusiveHierarchy() throws Exception {
+		LevelCache<String, String> inclusive = newCache("test-cache-inclusive",
+				builder -> builder.setHierarchyMode(HierarchyMode.INCLUSIVE));
+		inclusive.addLevel(2, "LRU");
+		inclusive.addLevel(4, "LRU");
+		
+		for (int i = 0; i < 6; i++) {
+			inclusive.put("key" + i, "value" + i);
+		}
+		// L1 is a subset of L2, the cache holds as many keys as its last level
+		assertEquals(2, inclusive.getLevelWeight(1));
+		assertEquals(4, inclusive.getLevelWeight(2));
+		assertNull(inclusive.get("key1"));
+		
+		// Rewriting a key updates every copy, and the key it pushes out of L1 stays in L2
+		inclusive.put("key3", "new");
+		assertEquals(4, inclusive.getLevelWeight(2));
+		assertEquals("new", inclusive.get("key3"));
+		assertEquals("value4", inclusive.get("key4"));
+		
+		Map<String, String> batch = new HashMap<>();
+		batch.put("key6", "value6");
+		batch.put("key7", "value7");
+		inclusive.putAll(batch);
+		assertEquals(2, inclusive.getLevelWeight(1));
+		assertEquals(4, inclusive.getLevelWeight(2));
+		assertEquals("new", inclusive.get("key3"));
+		assertEquals("value4", inclusive.get("key4"));
+		assertEquals("value6", inclusive.get("key6"));
+		assertEquals("value7", inclusive.get("key7"));
+		assertNull(inclusive.get("key2"));
+		assertNull(inclusive.get("key5"));
+		inclusive.clear();
+	}
+	
+	@Test
+	public void testOnlineLevelChanges() throws Exception {
+		assertEquals(Status.UNINITIALIZED, cache.getStatus());
+		cache.addLevel(100, "LRU");
+		cache.addLevel(200, "LFU");
+		cache.addLevel(1000, "LRU");
+		for (int i = 0; i < 1000; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		assertEquals(Status.AVAILABLE, cache.getStatus());
+		
+		// Removing a middle level keeps its entries readable while they migrate
+		cache.removeLevel(2);
+		assertEquals(2, cache.getLevelCount());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("value" + i, cache.get("key" + i));
+		}
+		cache.cleanUp();
+		assertEquals(Status.AVAILABLE, cache.getStatus());
+		assertEquals(100, cache.getLevelWeight(1));
+		assertEquals(900, cache.getLevelWeight(2));
+		
+		// A level inserted in the middle starts empty and fills through the cascade
+		cache.insertLevel(2, 50, "LFU");
+		assertEquals(3, cache.getLevelCount());
+		assertEquals(0, cache.getLevelWeight(2));
+		assertEquals(900, cache.getLevelWeight(3));
+		cache.put("key1000", "value1000");
+		assertEquals(1, cache.getLevelWeight(2));
+		
+		// Shrinking the last level drops what no longer fits, in the background
+		cache.resizeLevel(3, 500);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (cache.getStatus() == Status.MAINTENANCE && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(Status.AVAILABLE, cache.getStatus());
+		assertEquals(500, cache.getLevelWeight(3));
+		assertEquals("value1000", cache.get("key1000"));
+		assertEquals("value999", cache.get("key999"));
+		
+		assertThrows(LevelOutOfBoundException.class, () -> cache.resizeLevel(4, 10));
+		assertThrows(LevelOutOfBoundException.class, () -> cache.insertLevel(5, 10, "LRU"));
+	}
+	
+	@Test
+	public void testScan() throws Exception {
+		cache.addLevel(100, "LRU");
+		cache.addLevel(200, "LFU");
+		cache.addLevel(1000, "OFF_HEAP");
+		for (int i = 0; i < 1000; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		
+		Map<Integer, Long> byLevel = cache.stream()
+				.collect(Collectors.groupingBy(LevelEntry::getLevel, Collectors.counting()));
+		assertEquals(Long.valueOf(100), byLevel.get(1));
+		assertEquals(Long.valueOf(200), byLevel.get(2));
+		assertEquals(Long.valueOf(700), byLevel.get(3));
+		assertTrue(cache.stream().allMatch(entry -> entry.getValue().equals("value" + entry.getKey().substring(3))));
+		assertEquals(1000, cache.stream().parallel().map(LevelEntry::getKey).distinct().count());
+		
+		// Writes go on while the scan walks the levels, the keys they push down are
+		// seen in a lower level
+		Iterator<LevelEntry<String, String>> scan = cache.stream().iterator();
+		Set<String> seen = new HashSet<>();
+		while (scan.hasNext()) {
+			seen.add(scan.next().getKey());
+			if (seen.size() <= 100) {
+				cache.put("new" + seen.size(), "value");
+			}
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(seen.contains("key" + i));
+		}
+		
+		// Expired entries are skipped before the maintenance removes them
+		AtomicLong time = new AtomicLong();
+		LevelCache<String, String> expiring = newCache("test-cache-scan-expiry", builder -> builder.setTicker(time::get));
+		expiring.addLevel(100, "LRU");
+		expiring.addLevel(100, "LFU");
+		for (int i = 0; i < 100; i++) {
+			expiring.put("key" + i, "value");
+			expiring.put("session" + i, "value", Expiration.afterWrite(1, TimeUnit.SECONDS));
+		}
+		assertEquals(200, expiring.stream().count());
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertEquals(100, expiring.stream().count());
+		assertEquals(100, expiring.stream().parallel().count());
+		assertTrue(expiring.stream().allMatch(entry -> entry.getKey().startsWith("key")));
+		expiring.close();
+	}
+	
+	@Test
+	public void testNearCache() throws Exception {
+		AtomicLong time = new AtomicLong();
+		LevelCache<String, String> near = newCache("test-cache-near",
+				builder -> builder.setNearCacheSize(16).setTicker(time::get));
+		near.addLevel(2, "LRU");
+		near.put("a", "value");
+		near.put("b", "value");
+		// Read twice, both keys become hot for this thread
+		for (int i = 0; i < 2; i++) {
+			assertEquals("value", near.get("a"));
+		}
+		for (int i = 0; i < 2; i++) {
+			assertEquals("value", near.get("b"));
+		}
+		// Served by the near cache, the read still reaches the LRU order once the
+		// write drains it, so b is the one evicted
+		assertEquals("value", near.get("a"));
+		near.put("c", "value");
+		assertNull(near.get("b"));
+		assertEquals("value", near.get("a"));
+		
+		// A write from another thread makes the copy stale
+		Thread writer = new Thread(() -> near.put("a", "new"));
+		writer.start();
+		writer.join();
+		assertEquals("new", near.get("a"));
+		
+		// Keys with an expiry are never copied
+		near.put("d", "value", Expiration.afterWrite(1, TimeUnit.SECONDS));
+		for (int i = 0; i < 3; i++) {
+			assertEquals("value", near.get("d"));
+		}
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertNull(near.get("d"));
+		
+		near.clear();
+		near.addLevel(2, "LRU");
+		assertNull(near.get("a"));
+		near.clear();
+		
+		// A near hit is counted against the level holding the key, which promotes it
+		LevelCache<String, String> counted = newCache("test-cache-near-stats",
+				builder -> builder.setNearCacheSize(16).setStatisticsEnabled(true));
+		counted.addLevel(1, "LRU");
+		counted.addLevel(10, "LRU");
+		counted.put("x", "value");
+		for (int i = 0; i < 2; i++) {
+			assertEquals("value", counted.get("x"));
+		}
+		counted.put("y", "value");
+		assertEquals("value", counted.get("x"));
+		counted.cleanUp();
+		assertEquals(2, counted.stats().getHitCount(1));
+		assertEquals(1, counted.stats().getHitCount(2));
+		assertEquals("value", counted.get("x"));
+		counted.cleanUp();
+		assertEquals(3, counted.stats().getHitCount(1));
+		assertEquals(1, counted.stats().getHitCount(2));
+		counted.close();
+	}
+	
+	@Test
+	public void testSnapshotRestart() throws Exception {
+		LevelCache<String, String> original = newCache("test-cache-snapshot", UnaryOperator.identity());
+		original.addLevel(3, "LRU");
+		original.addLevel(4, "LFU");
+		for (int i = 0; i < 7; i++) {
+			original.put("key" + i, "value" + i);
+		}
+		// Reorder L1, key5 becomes its next victim
+		original.get("key4");
+		
+		Path file = Files.createTempFile("levelcache", ".snapshot");
+		try {
+			original.saveSnapshot(file);
+			LevelCache<String, String> restored = newCache("test-cache-restored", UnaryOperator.identity());
+			restored.loadSnapshot(file);
+			assertEquals(2, restored.getLevelCount());
+			assertEquals(3, restored.getLevelWeight(1));
+			assertEquals(4, restored.getLevelWeight(2));
+			// Both caches see the same reads and writes, and evict the same keys
+			for (int i = 0; i < 7; i++) {
+				assertEquals("value" + i, original.get("key" + i));
+				assertEquals("value" + i, restored.get("key" + i));
+			}
+			for (LevelCache<String, String> c : Arrays.asList(original, restored)) {
+				c.put("key7", "value7");
+				c.put("key8", "value8");
+			}
+			for (int i = 0; i < 9; i++) {
+				assertEquals(original.get("key" + i), restored.get("key" + i));
+			}
+			
+			assertThrows(CacheSnapshotException.class, () -> restored.loadSnapshot(file));
+			restored.clear();
+		} finally {
+			Files.deleteIfExists(file);
+			original.clear();
+		}
+	}
+	
+	@Test
+	public void testCorruptSnapshot() throws Exception {
+		cache.addLevel(3, "LRU");
+		cache.addLevel(4, "LFU");
+		for (int i = 0; i < 7; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		Path file = Files.createTempFile("levelcache", ".snapshot");
+		Path corrupt = Files.createTempFile("levelcache", ".snapshot");
+		LevelCache<String, String> restored = newCache("test-cache-corrupt", UnaryOperator.identity());
+		try {
+			cache.saveSnapshot(file);
+			byte[] bytes = Files.readAllBytes(file);
+			// The first record follows the 12 byte header, two 19 byte levels and a 16 byte chunk header
+			int keyLength = 12 + 2 * (16 + 3) + 16;
+			for (byte flipped : new byte[] { (byte) 0x80, (byte) 0x7f }) {
+				byte[] damaged = bytes.clone();
+				damaged[keyLength] = flipped;
+				Files.write(corrupt, damaged);
+				assertThrows(CacheSnapshotException.class, () -> restored.loadSnapshot(corrupt));
+				// Nothing of the snapshot is left behind
+				assertEquals(0, restored.getLevelCount());
+			}
+			Files.write(corrupt, Arrays.copyOf(bytes, bytes.length - 5));
+			assertThrows(CacheSnapshotException.class, () -> restored.loadSnapshot(corrupt));
+			assertEquals(0, restored.getLevelCount());
+			
+			restored.loadSnapshot(file);
+			assertEquals(2, restored.getLevelCount());
+			assertEquals("value6", restored.get("key6"));
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(corrupt);
+			restored.clear();
+		}
+	}
+	
+	@Test
+	public void testSnapshotOfAnEntryLargerThanAChunk() throws Exception {
+		cache.addLevel(3, "LRU");
+		// Over the 64MB a chunk of several entries may hold, saved in a chunk of its own
+		String large = "x".repeat((64 << 20) + 1);
+		cache.put("small", "value");
+		cache.put("large", large);
+		cache.put("last", "value");
+		Path file = Files.createTempFile("levelcache", ".snapshot");
+		LevelCache<String, String> restored = newCache("test-cache-large-entry", UnaryOperator.identity());
+		try {
+			cache.saveSnapshot(file);
+			restored.loadSnapshot(file);
+			assertEquals(large, restored.get("large"));
+			assertEquals("value", restored.get("small"));
+			assertEquals("value", restored.get("last"));
+		} finally {
+			Files.deleteIfExists(file);
+			restored.close();
+		}
+	}
+	
+}
@@ -0,0 +1,83 @@
+package com.levelcache;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.levelcache.simulator.LevelLayout;
+import com.levelcache.simulator.SimulationResult;
+import com.levelcache.simulator.Simulator;
+import com.levelcache.simulator.Trace;
+import com.levelcache.simulator.TraceFormat;
+
+
+public class SimulatorTest {
+
+	private static Trace loop(int keys, int passes) {
+		Object[] accesses = new Object[keys * passes];
+		for (int i = 0; i < accesses.length; i++) {
+			accesses[i] = "key" + (i % keys);
+		}
+		return Trace.of(accesses);
+	}
+
+	@Test
+	public void testPerLevelHitRatios() throws Exception {
+		List<SimulationResult> results = Simulator.simulateAll(loop(10, 3),
+				Arrays.asList(LevelLayout.parse("LRU:10"), LevelLayout.parse("LRU:5,LRU:5"), LevelLayout.parse("LRU:5")));
+		
+		SimulationResult single = results.get(0);
+		assertEquals(30, single.getAccesses());
+		assertEquals(20, single.getHits(1));
+		assertEquals(10, single.getMisses());
+		assertEquals(0, single.getEvictions());
+		
+		// The first pass pushes half of the keys down to L2, where they keep being found
+		SimulationResult twoLevels = results.get(1);
+		assertEquals(10, twoLevels.getHits(1));
+		assertEquals(10, twoLevels.getHits(2));
+		assertEquals(5, twoLevels.getDemotions(1));
+		assertEquals(1.0 / 3, twoLevels.getMissRatio(), 1e-9);
+		assertTrue(twoLevels.getThroughput() > 0);
+		
+		// A loop larger than the only level never hits under LRU
+		SimulationResult tooSmall = results.get(2);
+		assertEquals(0, tooSmall.getHits(1));
+		assertEquals(25, tooSmall.getEvictions());
+	}
+
+	@Test
+	public void testSameLayoutTwice() throws Exception {
+		List<SimulationResult> results = Simulator.simulateAll(loop(10, 3),
+				Arrays.asList(LevelLayout.parse("LRU:5,LRU:5"), LevelLayout.parse("LRU:5,LRU:5")));
+		assertEquals(results.get(0).getHits(2), results.get(1).getHits(2));
+		assertEquals(results.get(0).getMisses(), results.get(1).getMisses());
+	}
+
+	@Test
+	public void testTraceFormats() throws Exception {
+		Path arc = Files.createTempFile("levelcache", ".arc");
+		Path lirs = Files.createTempFile("levelcache", ".lirs");
+		try {
+			// ARC lines access a range of blocks
+			Files.write(arc, Arrays.asList("100 3 0 1", "101 1 0 2"));
+			Files.write(lirs, Arrays.asList("7", "*", "8", "7"));
+			
+			SimulationResult arcResult = Simulator.simulate(Trace.load(arc, TraceFormat.ARC), LevelLayout.parse("LRU:10"));
+			assertEquals(4, arcResult.getAccesses());
+			assertEquals(1, arcResult.getHits(1));
+			
+			SimulationResult lirsResult = Simulator.simulate(Trace.load(lirs, TraceFormat.LIRS), LevelLayout.parse("LFU:10"));
+			assertEquals(3, lirsResult.getAccesses());
+			assertEquals(1, lirsResult.getHits(1));
+		} finally {
+			Files.deleteIfExists(arc);
+			Files.deleteIfExists(lirs);
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package com.levelcache;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.levelcache.serialization.DefaultSerializer;
+import com.levelcache.storage.ArcStorageEngine;
+import com.levelcache.storage.DiskStorageEngine;
+import com.levelcache.storage.LruStorageEngine;
+import com.levelcache.storage.OffHeapStorageEngine;
+import com.levelcache.storage.S3FifoStorageEngine;
+import com.levelcache.storage.StorageEngine;
+import com.levelcache.storage.TinyLfuStorageEngine;
+
+
+public class StorageEngineTest {
+
+	@Test
+	public void testOffHeapEngineEvictsLeastRecentlyUsed() {
+		OffHeapStorageEngine<Long, String> engine = 
+				new OffHeapStorageEngine<>(2, new DefaultSerializer<>(), new DefaultSerializer<>());
+		
+		engine.createPair(1L, "one");
+		engine.createPair(2L, "two");
+		assertEquals("one", engine.findByKey(1L));
+		engine.createPair(3L, "three");
+		
+		Map.Entry<Long, String> evicted = engine.getEvictedKeyIfAny();
+		assertEquals(Long.valueOf(2L), evicted.getKey());
+		assertEquals("two", evicted.getValue());
+		assertNull(engine.findByKey(2L));
+		
+		engine.createPair(1L, "uno");
+		assertNull(engine.getEvictedKeyIfAny());
+		assertEquals("uno", engine.deleteByKey(1L));
+		assertEquals(1, engine.getSnapShort().size());
+		engine.close();
+	}
+	
+	@Test
+	public void testDiskEngineCompactsOverwrittenRecords() throws Exception {
+		Path directory = Files.createTempDirectory("levelcache-test-");
+		DiskStorageEngine<String, String> engine = 
+				new DiskStorageEngine<>(10, directory, 1024, new DefaultSerializer<>(), new DefaultSerializer<>());
+		
+		String value = "v".repeat(100);
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 10; i++) {
+				engine.createPair("key" + i, value + round);
+			}
+		}
+		assertNull(engine.getEvictedKeyIfAny());
+		
+		// Only the last round is live, the rest is reclaimed in the background
+		long deadline = System.currentTimeMillis() + 5000;
+		while (engine.getDiskBytes() > 10 * 1024 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(engine.getDiskBytes() <= 10 * 1024);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(value + 19, engine.findByKey("key" + i));
+		}
+		
+		engine.createPair("key10", "new");
+		assertEquals("key0", engine.getEvictedKeyIfAny().getKey());
+		engine.close();
+		assertFalse(Files.exists(directory));
+	}
+	
+	@Test
+	public void testDiskEngineRestoresItsEvictionOrder() throws Exception {
+		DiskStorageEngine<String, String> engine = new DiskStorageEngine<>(3, Files.createTempDirectory("levelcache-test-"),
+				1024, new DefaultSerializer<>(), new DefaultSerializer<>());
+		for (int i = 0; i < 3; i++) {
+			engine.createPair("key" + i, "value" + i);
+		}
+		engine.findByKey("key0");
+		List<String> order = new ArrayList<>();
+		engine.forEachInEvictionOrder((key, value, frequency) -> order.add(key));
+		assertEquals(Arrays.asList("key1", "key2", "key0"), order);
+		
+		DiskStorageEngine<String, String> restored = new DiskStorageEngine<>(3,
+				Files.createTempDirectory("levelcache-test-"), 1024, new DefaultSerializer<>(), new DefaultSerializer<>());
+		engine.forEachInEvictionOrder((key, value, frequency) -> restored.restorePair(key, value, frequency));
+		engine.close();
+		restored.createPair("key3", "value3");
+		assertEquals("key1", restored.getEvictedKeyIfAny().getKey());
+		assertEquals("value0", restored.findByKey("key0"));
+		restored.close();
+	}
+	
+	@Test
+	public void testTinyLfuEngineResistsScans() {
+		TinyLfuStorageEngine<Integer, String> engine = new TinyLfuStorageEngine<>(100);
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 50; i++) {
+				engine.createPair(i, "hot" + i);
+				engine.findByKey(i);
+			}
+		}
+		
+		// One-hit keys are rejected at the window instead of displacing the hot ones
+		int evicted = 0;
+		for (int i = 1000; i < 11000; i++) {
+			engine.createPair(i, "cold" + i);
+			evicted += engine.getEvictedEntries().size();
+			if (i % 20 == 0) {
+				assertEquals("hot" + i / 20 % 50, engine.findByKey(i / 20 % 50));
+			}
+		}
+		assertEquals(10000 - 50, evicted);
+		for (int i = 0; i < 50; i++) {
+			assertEquals("hot" + i, engine.findByKey(i));
+		}
+		assertEquals(100, engine.getWeight());
+		
+		assertEquals("hot0", engine.deleteByKey(0));
+		assertEquals(99, engine.getSnapShort().size());
+	}
+	
+	@Test
+	public void testArcEngineKeepsFrequentKeysThroughScans() {
+		ArcStorageEngine<Integer, String> engine = new ArcStorageEngine<>(10);
+		for (int i = 0; i < 5; i++) {
+			engine.createPair(i, "hot" + i);
+			assertEquals("hot" + i, engine.findByKey(i));
+		}
+		// A scan only churns the list of keys seen once
+		for (int i = 100; i < 200; i++) {
+			engine.createPair(i, "cold" + i);
+			Map.Entry<Integer, String> evicted = engine.getEvictedKeyIfAny();
+			assertTrue(evicted == null || evicted.getKey() >= 100);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertEquals("hot" + i, engine.findByKey(i));
+		}
+		assertEquals(10, engine.getWeight());
+		
+		// A key back from the ghost list grows the recency target and displaces the oldest scan key
+		engine.createPair(194, "again");
+		assertEquals(Integer.valueOf(195), engine.getEvictedKeyIfAny().getKey());
+		assertEquals("again", engine.deleteByKey(194));
+		assertEquals(9, engine.getSnapShort().size());
+	}
+	
+	@Test
+	public void testArcEngineAdaptsByTheGhostRatio() {
+		ArcStorageEngine<Integer, Integer> engine = new ArcStorageEngine<>(5);
+		for (int key : new int[] { 2, 6, 11, 11, 7, 4, 11, 8, 7, 10, 6, 2, 1, 3 }) {
+			engine.createPair(key, key);
+		}
+		// T1: {10, 1, 3}, T2: {6, 2}, B1: {4, 8}, B2: {11, 7}, p = 2.
+		// 7 returns from B2 while both ghost lists hold two keys, so p steps down by 1
+		engine.createPair(7, 7);
+		assertEquals(Integer.valueOf(10), engine.getEvictedKeyIfAny().getKey());
+		// 10 returns from B1 and p is back at 2, T1 is not over its target and T2 gives up its oldest
+		engine.createPair(10, 10);
+		assertEquals(Integer.valueOf(6), engine.getEvictedKeyIfAny().getKey());
+	}
+	
+	@Test
+	public void testArcEngineBoundsItsGhostsAcrossDeletes() {
+		ArcStorageEngine<Integer, Integer> engine = new ArcStorageEngine<>(5);
+		for (int round = 0; round < 20; round++) {
+			// Fill the cache twice over, read half of it, then delete whatever is resident
+			for (int key = round * 10; key < round * 10 + 10; key++) {
+				engine.createPair(key, key);
+				if (key % 2 == 0) {
+					engine.findByKey(key);
+				}
+			}
+			for (Integer key : new ArrayList<>(engine.getSnapShort().keySet())) {
+				engine.deleteByKey(key);
+			}
+			assertEquals(0, engine.getWeight());
+			assertTrue(engine.getGhostCount() <= 5);
+			// Reinsert keys of this round, ghosts among them return straight to T2
+			for (int key = round * 10; key < round * 10 + 10; key++) {
+				engine.createPair(key, key);
+				assertTrue(engine.getWeight() <= 5);
+				assertTrue(engine.getGhostCount() <= 5);
+			}
+			for (Integer key : new ArrayList<>(engine.getSnapShort().keySet())) {
+				engine.deleteByKey(key);
+			}
+		}
+		// A key evicted from T2 still comes back as a ghost hit after all the deletes
+		for (int key = 1000; key < 1005; key++) {
+			engine.createPair(key, key);
+			engine.findByKey(key);
+		}
+		engine.createPair(1005, 1005);
+		assertEquals(Integer.valueOf(1000), engine.getEvictedKeyIfAny().getKey());
+		engine.createPair(1000, 1000);
+		List<String> visited = new ArrayList<>();
+		engine.forEachInEvictionOrder((key, value, frequency) -> visited.add(key + ":" + frequency));
+		assertEquals("1000:2", visited.get(visited.size() - 1));
+	}
+	
+	@Test
+	public void testS3FifoEngineKeepsReadKeys() {
+		S3FifoStorageEngine<Integer, String> engine = new S3FifoStorageEngine<>(10);
+		for (int i = 0; i < 10; i++) {
+			engine.createPair(i, "value" + i);
+		}
+		// Read keys move to the main queue when they reach the head of the small one
+		assertEquals("value0", engine.findByKey(0));
+		assertEquals("value1", engine.findByKey(1));
+		engine.createPair(10, "value10");
+		assertEquals(Integer.valueOf(2), engine.getEvictedKeyIfAny().getKey());
+		for (int i = 11; i < 30; i++) {
+			engine.createPair(i, "value" + i);
+			assertTrue(engine.getEvictedKeyIfAny().getKey() > 1);
+		}
+		assertEquals("value0", engine.findByKey(0));
+		assertEquals("value1", engine.findByKey(1));
+		
+		// A key evicted recently comes back straight into the main queue
+		engine.createPair(2, "again");
+		assertEquals("again", engine.deleteByKey(2));
+		assertEquals(9, engine.getSnapShort().size());
+		assertEquals(9, engine.getWeight());
+	}
+	
+	// The entries of the engine as visited for a snapshot, each with its frequency
+	private static List<String> visit(StorageEngine<Integer, String> engine) {
+		List<String> visited = new ArrayList<>();
+		engine.forEachInEvictionOrder((key, value, frequency) -> visited.add(key + ":" + frequency));
+		return visited;
+	}
+	
+	// Replay the visit of the engine into an empty one, as a snapshot restore does
+	private static void assertRestoredAsVisited(StorageEngine<Integer, String> engine, StorageEngine<Integer, String> empty) {
+		engine.forEachInEvictionOrder((key, value, frequency) -> {
+			empty.restorePair(key, value, frequency);
+			assertNull(empty.getEvictedKeyIfAny());
+		});
+		assertEquals(visit(engine), visit(empty));
+		assertEquals(engine.getSnapShort(), empty.getSnapShort());
+	}
+	
+	@Test
+	public void testQueuedEnginesRestoreTheirState() {
+		ArcStorageEngine<Integer, String> arc = new ArcStorageEngine<>(10);
+		TinyLfuStorageEngine<Integer, String> tinyLfu = new TinyLfuStorageEngine<>(20);
+		S3FifoStorageEngine<Integer, String> s3Fifo = new S3FifoStorageEngine<>(10);
+		for (StorageEngine<Integer, String> engine : Arrays.asList(arc, tinyLfu, s3Fifo)) {
+			for (int i = 0; i < 400; i++) {
+				engine.createPair(i % 37, "value" + i);
+				engine.findByKey(i % 5);
+				if (i % 3 == 0) {
+					engine.findByKey(i % 11);
+				}
+			}
+		}
+		// Both resident lists, the three queues and the two queues are in use
+		assertTrue(visit(arc).stream().anyMatch(entry -> entry.endsWith(":1")));
+		assertTrue(visit(arc).stream().anyMatch(entry -> entry.endsWith(":2")));
+		assertTrue(visit(tinyLfu).stream().map(entry -> Integer.parseInt(entry.split(":")[1]) & 3).distinct().count() == 3);
+		assertTrue(visit(s3Fifo).stream().anyMatch(entry -> Integer.parseInt(entry.split(":")[1]) < 4));
+		assertTrue(visit(s3Fifo).stream().anyMatch(entry -> Integer.parseInt(entry.split(":")[1]) >= 4));
+		
+		assertRestoredAsVisited(arc, new ArcStorageEngine<>(10));
+		assertRestoredAsVisited(tinyLfu, new TinyLfuStorageEngine<>(20));
+		S3FifoStorageEngine<Integer, String> restored = new S3FifoStorageEngine<>(10);
+		assertRestoredAsVisited(s3Fifo, restored);
+		// Without ghosts to tell them apart, both evict the same entry next
+		s3Fifo.createPair(1000, "new");
+		restored.createPair(1000, "new");
+		assertEquals(s3Fifo.getEvictedKeyIfAny(), restored.getEvictedKeyIfAny());
+	}
+	
+	@Test
+	public void testWeightedEngineRejectsNonPositiveWeights() {
+		LruStorageEngine<String, String> engine = new LruStorageEngine<>(10, (String key, String value) -> value.length());
+		engine.createPair("a", "aaaa");
+		assertThrows(IllegalArgumentException.class, () -> engine.createPair("b", ""));
+		assertEquals(4, engine.getWeight());
+		assertNull(engine.findByKey("b"));
+	}
+}
@@ -1,7 +1,17 @@
 package com.levelcache;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -11,15 +21,17 @@ import static org.junit.Assert.*;
 import com.levelcache.config.CacheConfiguration;
 import com.levelcache.config.ConfigurationBuilder;
 import com.levelcache.factory.CacheFactory;
+import com.levelcache.core.AsyncLevelCache;
 import com.levelcache.core.LevelCache;
 import com.levelcache.exception.CacheInitializationException;
+import com.levelcache.exception.CacheReadingException;
 import com.levelcache.exception.LevelCreationException;
 import com.levelcache.exception.LevelOutOfBoundException;
 
 
 public class ThreadSafetyTest {
 	
-	private LevelCache cache;
+	private LevelCache<String, String> cache;
 	
 	@Before
 	public void setUp() throws CacheInitializationException {
@@ -80,4 +92,169 @@ public class ThreadSafetyTest {
 	    assertEquals(1, cache.getLevelCount());
 	}
 
+	@Test
+	public void testStripedConcurrentPuts() throws Exception {
+		CacheConfiguration config = new ConfigurationBuilder()
+				.setCacheName("test-cache-striped")
+				.setConcurrencyLevel(4).setStripingEnabled(true)
+				.setMaxCacheLevels(10)
+				.build();
+		LevelCache<String, String> striped = CacheFactory.createCache(config);
+		striped.addLevel(400, "LRU");
+		striped.addLevel(400, "LFU");
+		
+		int writers = 4;
+		CountDownLatch latch = new CountDownLatch(writers);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < writers; t++) {
+			final int offset = t * 50;
+			threads.add(new Thread(() -> {
+				try {
+					for (int i = offset; i < offset + 50; i++) {
+						striped.put("key" + i, "value" + i);
+					}
+				} finally {
+					latch.countDown();
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		
+		for (int i = 0; i < writers * 50; i++) {
+			assertEquals("value" + i, striped.get("key" + i));
+		}
+		striped.clear();
+		assertEquals(0, striped.getLevelCount());
+	}
+
+	@Test
+	public void testConcurrentReadsOnConcurrentLru() throws Exception {
+		cache.addLevel(100, "CONCURRENT_LRU");
+		for (int i = 0; i < 100; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		
+		int readers = 4;
+		CountDownLatch latch = new CountDownLatch(readers);
+		List<String> failures = new ArrayList<>();
+		for (int t = 0; t < readers; t++) {
+			new Thread(() -> {
+				try {
+					for (int round = 0; round < 100; round++) {
+						for (int i = 0; i < 100; i++) {
+							if (!("value" + i).equals(cache.get("key" + i))) {
+								synchronized (failures) {
+									failures.add("key" + i);
+								}
+							}
+						}
+					}
+				} finally {
+					latch.countDown();
+				}
+			}).start();
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(failures.isEmpty());
+		
+		// Reordering done by the readers keeps the list intact for evictions
+		for (int i = 100; i < 200; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		for (int i = 100; i < 200; i++) {
+			assertEquals("value" + i, cache.get("key" + i));
+		}
+	}
+
+	@Test
+	public void testSingleFlightLoading() throws Exception {
+		cache.addLevel(10, "LRU");
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		
+		int readers = 8;
+		CountDownLatch latch = new CountDownLatch(readers);
+		List<String> results = new ArrayList<>();
+		for (int t = 0; t < readers; t++) {
+			new Thread(() -> {
+				try {
+					String value = cache.get("popular", key -> {
+						loads.incrementAndGet();
+						// Hold the load until every reader had a chance to miss
+						release.await(5, TimeUnit.SECONDS);
+						return "loaded-" + key;
+					});
+					synchronized (results) {
+						results.add(value);
+					}
+				} finally {
+					latch.countDown();
+				}
+			}).start();
+		}
+		Thread.sleep(200);
+		release.countDown();
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		
+		assertEquals(1, loads.get());
+		assertEquals(readers, results.size());
+		for (String value : results) {
+			assertEquals("loaded-popular", value);
+		}
+		// The loaded value went through the normal write path
+		assertEquals("loaded-popular", cache.get("popular"));
+		
+		// A failing load surfaces as a read error and caches nothing
+		assertThrows(CacheReadingException.class, () -> cache.get("broken", key -> {
+			throw new IllegalStateException("origin down");
+		}));
+		assertNull(cache.get("broken"));
+	}
+
+	@Test
+	public void testAsyncPerKeyOrdering() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			CacheConfiguration config = new ConfigurationBuilder()
+					.setCacheName("test-cache-async")
+					.setMaxCacheLevels(10)
+					.setConcurrencyLevel(4).setStripingEnabled(true)
+					.setValueType(String.class)
+					.setKeyType(String.class)
+					.setAsyncExecutor(executor)
+					.build();
+			LevelCache<String, String> cache = CacheFactory.createCache(config);
+			AsyncLevelCache<String, String> async = cache.async();
+			
+			// Level-less caches fail the future instead of throwing at the caller
+			CompletableFuture<String> failed = async.getAsync("key");
+			ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+			assertTrue(error.getCause() instanceof CacheReadingException);
+			
+			cache.addLevel(100, "LRU");
+			List<CompletableFuture<String>> reads = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				async.putAsync("key" + (i % 10), "value" + i);
+				// Each read follows the write submitted just before it on the same key
+				reads.add(async.getAsync("key" + (i % 10)));
+			}
+			for (int i = 0; i < 200; i++) {
+				assertEquals("value" + i, reads.get(i).get(5, TimeUnit.SECONDS));
+			}
+			
+			Map<String, String> batch = new HashMap<>();
+			batch.put("key1", "batched1");
+			batch.put("key2", "batched2");
+			async.putAllAsync(batch);
+			Map<String, String> values = async.getAllAsync(Arrays.asList("key1", "key2", "key3")).get(5, TimeUnit.SECONDS);
+			assertEquals("batched1", values.get("key1"));
+			assertEquals("batched2", values.get("key2"));
+			assertEquals("value193", values.get("key3"));
+			cache.clear();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 }
@@ -0,0 +1,153 @@
+package com.levelcache.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class KeyDirectoryTest {
+
+	// Key with a chosen hash code, to place keys in the same probe chain
+	private static final class Key {
+		final String name;
+		final int hash;
+
+		Key(String name, int hash) {
+			this.name = name;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	// Hash codes whose home slot is the given one in a table of the initial 16 slots
+	private static List<Integer> hashesHomedAt(int slot, int count) {
+		List<Integer> hashes = new ArrayList<>();
+		for (int hash = 0; hashes.size() < count; hash++) {
+			int h = hash * 0x9E3779B9;
+			if (((h ^ (h >>> 16)) & 15) == slot) {
+				hashes.add(hash);
+			}
+		}
+		return hashes;
+	}
+
+	@Test
+	public void testCollidingKeys() {
+		KeyDirectory<Key> directory = new KeyDirectory<>();
+		for (int i = 1; i <= 8; i++) {
+			assertEquals(0, directory.put(new Key("key" + i, 42), i));
+		}
+		assertEquals(8, directory.size());
+		for (int i = 1; i <= 8; i++) {
+			assertEquals(i, directory.get(new Key("key" + i, 42)));
+		}
+		assertEquals(0, directory.get(new Key("absent", 42)));
+		assertEquals(3, directory.put(new Key("key3", 42), 5));
+		assertEquals(5, directory.get(new Key("key3", 42)));
+		assertEquals(8, directory.size());
+	}
+
+	@Test
+	public void testRemovalWithinAProbeChain() {
+		KeyDirectory<Key> directory = new KeyDirectory<>();
+		for (int i = 1; i <= 5; i++) {
+			directory.put(new Key("key" + i, 7), i);
+		}
+		// The keys probed past the hole move back, none is lost behind it
+		assertEquals(2, directory.remove(new Key("key2", 7)));
+		assertEquals(0, directory.get(new Key("key2", 7)));
+		for (int i : new int[] { 1, 3, 4, 5 }) {
+			assertEquals(i, directory.get(new Key("key" + i, 7)));
+		}
+		assertEquals(1, directory.remove(new Key("key1", 7)));
+		assertEquals(5, directory.remove(new Key("key5", 7)));
+		assertEquals(3, directory.get(new Key("key3", 7)));
+		assertEquals(4, directory.get(new Key("key4", 7)));
+		assertEquals(0, directory.remove(new Key("key5", 7)));
+		assertEquals(2, directory.size());
+	}
+
+	@Test
+	public void testRemovalAcrossTheEndOfTheTable() {
+		KeyDirectory<Key> directory = new KeyDirectory<>();
+		// Three keys homed at the last slot wrap around to the first ones,
+		// followed by a key homed at the first slot
+		List<Key> keys = new ArrayList<>();
+		for (int hash : hashesHomedAt(15, 3)) {
+			keys.add(new Key("last" + keys.size(), hash));
+		}
+		keys.add(new Key("first", hashesHomedAt(0, 1).get(0)));
+		for (int i = 0; i < keys.size(); i++) {
+			directory.put(keys.get(i), i + 1);
+		}
+		assertEquals(1, directory.remove(keys.get(0)));
+		assertEquals(2, directory.get(keys.get(1)));
+		assertEquals(3, directory.get(keys.get(2)));
+		assertEquals(4, directory.get(keys.get(3)));
+		assertEquals(3, directory.remove(keys.get(2)));
+		assertEquals(2, directory.get(keys.get(1)));
+		assertEquals(4, directory.get(keys.get(3)));
+	}
+
+	@Test
+	public void testGrowthAcrossResizes() {
+		KeyDirectory<String> directory = new KeyDirectory<>();
+		for (int i = 0; i < 10000; i++) {
+			directory.put("key" + i, i % 100 + 1);
+		}
+		assertEquals(10000, directory.size());
+		for (int i = 0; i < 10000; i += 2) {
+			assertEquals(i % 100 + 1, directory.remove("key" + i));
+		}
+		assertEquals(5000, directory.size());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i % 2 == 0 ? 0 : i % 100 + 1, directory.get("key" + i));
+		}
+		directory.clear();
+		assertEquals(0, directory.size());
+		assertEquals(0, directory.get("key1"));
+	}
+
+	@Test
+	public void testReplaceLevels() {
+		KeyDirectory<String> directory = new KeyDirectory<>();
+		for (int i = 0; i < 100; i++) {
+			directory.put("key" + i, i % 4 + 1);
+		}
+		// Level 2 removed, the levels below it move one up
+		directory.replaceLevels(level -> level > 2 ? level - 1 : level);
+		for (int i = 0; i < 100; i++) {
+			int level = i % 4 + 1;
+			assertEquals(level > 2 ? level - 1 : level, directory.get("key" + i));
+		}
+		assertEquals(100, directory.size());
+	}
+
+	@Test
+	public void testMaxLevel() {
+		KeyDirectory<String> directory = new KeyDirectory<>();
+		// Levels are stored as shorts, the deepest one must read back positive
+		directory.put("deepest", KeyDirectory.MAX_LEVEL);
+		assertEquals(KeyDirectory.MAX_LEVEL, directory.get("deepest"));
+		directory.replaceLevels(level -> level - 1);
+		assertEquals(KeyDirectory.MAX_LEVEL - 1, directory.get("deepest"));
+		assertEquals(KeyDirectory.MAX_LEVEL - 1, directory.remove("deepest"));
+	}
+}